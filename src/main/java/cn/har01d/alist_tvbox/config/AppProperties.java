@@ -26,6 +26,15 @@ public class AppProperties {
     private String tgChannels = Constants.TG_CHANNELS;
     private String tgWebChannels = Constants.TG_WEB_CHANNELS;
     private int tgTimeout = 5000;
+    private int taskUpdateInterval = 5000;
+    private int scrapeThreads = 3;
+    private int doubanInterval = 1000;
+    private int listCacheSize = 1000;
+    private int listCacheTtl = 30;
+    private int listCacheStale = 600;
+    private int prefetchFileTtl = 300;
+    private int tmdbCacheDays = 30;
+    private int tmdbCacheSize = 20000;
     private Set<String> formats;
     private Set<String> subtitles;
     private List<Site> sites;
@@ -0,0 +1,12 @@
+package cn.har01d.alist_tvbox.dto;
+
+import lombok.Data;
+
+@Data
+public class CacheStats {
+    private final long size;
+    private final long hitCount;
+    private final long missCount;
+    private final double hitRate;
+    private final long evictionCount;
+}
@@ -18,6 +18,7 @@ public class IndexRequest {
     private boolean includeFiles;
     private int maxDepth = 10;
     private int sleep = 2000;
+    private int concurrency = 1;
     private List<String> paths = new ArrayList<>();
     private Set<String> stopWords = new HashSet<>();
     private Set<String> excludes = new HashSet<>();
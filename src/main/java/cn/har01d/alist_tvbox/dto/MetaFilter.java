@@ -0,0 +1,16 @@
+package cn.har01d.alist_tvbox.dto;
+
+import java.time.LocalDate;
+
+// filters of a meta category page, score is one of normal, high, low and no
+public record MetaFilter(String path, String score, Integer year, boolean yearBefore) {
+    public static MetaFilter of(String path, String score, String year) {
+        if (year.isEmpty()) {
+            return new MetaFilter(path, score, null, false);
+        }
+        if ("others".equals(year)) {
+            return new MetaFilter(path, score, LocalDate.now().getYear() - 20, true);
+        }
+        return new MetaFilter(path, score, Integer.parseInt(year), false);
+    }
+}
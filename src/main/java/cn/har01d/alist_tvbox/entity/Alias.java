@@ -2,6 +2,7 @@ package cn.har01d.alist_tvbox.entity;
 
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToOne;
 import lombok.Getter;
@@ -14,6 +15,7 @@ import lombok.ToString;
 @ToString
 @RequiredArgsConstructor
 @Entity
+@EntityListeners(TitleDictionaryListener.class)
 public class Alias {
     @Id
     private String name;
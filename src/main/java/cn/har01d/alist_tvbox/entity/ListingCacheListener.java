@@ -0,0 +1,23 @@
+package cn.har01d.alist_tvbox.entity;
+
+import cn.har01d.alist_tvbox.service.AListService;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+// cached listings were loaded with the url, folder and credentials of the site
+@Component
+public class ListingCacheListener {
+    private final AListService aListService;
+
+    public ListingCacheListener(@Lazy AListService aListService) {
+        this.aListService = aListService;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onChange(Site site) {
+        aListService.invalidate(site.getId(), "site " + site.getName());
+    }
+}
@@ -2,10 +2,13 @@ package cn.har01d.alist_tvbox.entity;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
 import jakarta.persistence.TableGenerator;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -19,10 +22,16 @@ import java.time.Instant;
 @ToString
 @RequiredArgsConstructor
 @Entity
-@TableGenerator(name = "tableGenerator", table = "id_generator", pkColumnName = "entity_name", valueColumnName = "next_id", allocationSize = 1)
+@EntityListeners({SearchCacheListener.class, MetaCursorListener.class, MetaSearchListener.class})
+@Table(indexes = {
+        @Index(name = "idx_meta_path_score_year_time", columnList = "path, score, `year`, time"),
+        @Index(name = "idx_meta_time_id", columnList = "time, id")
+})
+// ids are reserved 100 at a time, so batched inserts do not update id_generator for every row
+@TableGenerator(name = "metaGenerator", table = "id_generator", pkColumnName = "entity_name", valueColumnName = "next_id", pkColumnValue = "meta", allocationSize = 100)
 public class Meta {
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE, generator = "tableGenerator")
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "metaGenerator")
     private Integer id;
     @Column(unique = true)
     private String path;
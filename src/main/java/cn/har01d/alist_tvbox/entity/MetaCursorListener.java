@@ -0,0 +1,25 @@
+package cn.har01d.alist_tvbox.entity;
+
+import cn.har01d.alist_tvbox.service.TvBoxService;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+// the cursors of meta pages keep the total of the first page, it changes with the rows
+@Component
+public class MetaCursorListener {
+    private final TvBoxService tvBoxService;
+
+    public MetaCursorListener(@Lazy TvBoxService tvBoxService) {
+        this.tvBoxService = tvBoxService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Meta meta) {
+        tvBoxService.invalidateMetaCursors();
+    }
+}
@@ -2,44 +2,46 @@ package cn.har01d.alist_tvbox.entity;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
+import java.util.Collection;
 import java.util.List;
 
-public interface MetaRepository extends JpaRepository<Meta, Integer> {
+// movie and tmdb are fetched in the same query, otherwise every row of a page selects them one by one
+public interface MetaRepository extends JpaRepository<Meta, Integer>, JpaSpecificationExecutor<Meta>, MetaRepositoryCustom {
+    @Override
+    @EntityGraph(attributePaths = {"movie", "tmdb"})
+    Page<Meta> findAll(Specification<Meta> spec, Pageable pageable);
+
+    @Override
+    @EntityGraph(attributePaths = {"movie", "tmdb"})
+    Page<Meta> findAll(Pageable pageable);
+
+    @Override
+    @EntityGraph(attributePaths = {"movie", "tmdb"})
+    List<Meta> findAllById(Iterable<Integer> ids);
+
+    @EntityGraph(attributePaths = {"movie", "tmdb"})
     Meta findByPath(String path);
 
+    @EntityGraph(attributePaths = {"movie", "tmdb"})
+    List<Meta> findByPathIn(Collection<String> paths);
+
     List<Meta> findByTmdb(Tmdb tmdb);
 
+    @EntityGraph(attributePaths = {"movie", "tmdb"})
     List<Meta> findByPathContains(String text);
 
+    @EntityGraph(attributePaths = {"movie", "tmdb"})
     Page<Meta> findByPathContains(String text, Pageable pageable);
 
+    @EntityGraph(attributePaths = {"movie", "tmdb"})
+    Page<Meta> findByIdInAndPathContains(Collection<Integer> ids, String text, Pageable pageable);
+
     boolean existsByPath(String path);
 
     boolean existsByPathStartsWith(String path);
-
-    Page<Meta> findByPathStartsWith(String prefix, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndYear(String prefix, Integer year, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndYearLessThan(String prefix, Integer year, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndScoreGreaterThanEqual(String prefix, Integer score, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndScoreGreaterThanEqualAndYear(String prefix, Integer score, Integer year, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndScoreGreaterThanEqualAndYearLessThan(String prefix, Integer score, Integer year, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndScoreLessThan(String prefix, Integer score, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndScoreLessThanAndYear(String prefix, Integer score, Integer year, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndScoreLessThanAndYearLessThan(String prefix, Integer score, Integer year, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndScoreIsNull(String prefix, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndScoreIsNullAndYear(String prefix, Integer year, Pageable pageable);
-
-    Page<Meta> findByPathStartsWithAndScoreIsNullAndYearLessThan(String prefix, Integer year, Pageable pageable);
 }
@@ -0,0 +1,15 @@
+package cn.har01d.alist_tvbox.entity;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface MetaRepositoryCustom {
+    // first rows of the query without a count query, for keyset pagination
+    List<Meta> findAll(Specification<Meta> spec, Sort sort, int limit);
+
+    // inserts or updates the rows by path in JDBC batches, the given state replaces the stored one
+    List<Meta> upsertAll(Collection<Meta> metas);
+}
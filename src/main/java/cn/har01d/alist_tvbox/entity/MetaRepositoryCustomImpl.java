@@ -0,0 +1,111 @@
+package cn.har01d.alist_tvbox.entity;
+
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+public class MetaRepositoryCustomImpl implements MetaRepositoryCustom {
+    // same as hibernate.jdbc.batch_size
+    private static final int BATCH_SIZE = 100;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Meta> findAll(Specification<Meta> spec, Sort sort, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Meta> query = builder.createQuery(Meta.class);
+        Root<Meta> root = query.from(Meta.class);
+        query.where(spec.toPredicate(root, query, builder));
+        query.orderBy(QueryUtils.toOrders(sort, root, builder));
+
+        EntityGraph<Meta> graph = entityManager.createEntityGraph(Meta.class);
+        graph.addAttributeNodes("movie", "tmdb");
+        return entityManager.createQuery(query)
+                .setHint("jakarta.persistence.fetchgraph", graph)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    @Transactional
+    public List<Meta> upsertAll(Collection<Meta> metas) {
+        // path is unique, the last state of a path wins
+        Map<String, Meta> map = new LinkedHashMap<>();
+        for (Meta meta : metas) {
+            map.put(meta.getPath(), meta);
+        }
+
+        List<Meta> list = new ArrayList<>(map.values());
+        List<Meta> result = new ArrayList<>(list.size());
+        for (int start = 0; start < list.size(); start += BATCH_SIZE) {
+            List<Meta> batch = list.subList(start, Math.min(start + BATCH_SIZE, list.size()));
+            List<Integer> ids = batch.stream().map(Meta::getId).filter(Objects::nonNull).toList();
+            Map<Integer, Meta> byId = new HashMap<>();
+            Map<String, Meta> byPath = new HashMap<>();
+            // two queries, H2 does not use the indexes for an OR of both conditions
+            for (Meta row : findRows("m.path in :values", batch.stream().map(Meta::getPath).toList())) {
+                byId.put(row.getId(), row);
+                byPath.put(row.getPath(), row);
+            }
+            if (!ids.isEmpty()) {
+                for (Meta row : findRows("m.id in :values", ids)) {
+                    byId.put(row.getId(), row);
+                }
+            }
+
+            for (Meta meta : batch) {
+                Meta row = meta.getId() == null ? null : byId.get(meta.getId());
+                if (row == null) {
+                    row = byPath.get(meta.getPath());
+                }
+                if (row == null) {
+                    meta.setId(null);
+                    entityManager.persist(meta);
+                    result.add(meta);
+                } else {
+                    copy(meta, row);
+                    result.add(row);
+                }
+            }
+            entityManager.flush();
+            entityManager.clear();
+        }
+        return result;
+    }
+
+    private List<Meta> findRows(String condition, List<?> values) {
+        return entityManager.createQuery("select m from Meta m left join fetch m.movie left join fetch m.tmdb where " + condition, Meta.class)
+                .setParameter("values", values)
+                .getResultList();
+    }
+
+    // copies onto the loaded row instead of merge, which would select every changed movie and tmdb
+    private static void copy(Meta source, Meta target) {
+        target.setPath(source.getPath());
+        target.setName(source.getName());
+        target.setYear(source.getYear());
+        target.setScore(source.getScore());
+        target.setMovie(source.getMovie());
+        target.setType(source.getType());
+        target.setTmId(source.getTmId());
+        target.setSiteId(source.getSiteId());
+        target.setTmdb(source.getTmdb());
+        target.setTime(source.getTime());
+    }
+}
@@ -0,0 +1,28 @@
+package cn.har01d.alist_tvbox.entity;
+
+import cn.har01d.alist_tvbox.service.MetaSearchService;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+@Component
+public class MetaSearchListener {
+    private final MetaSearchService metaSearchService;
+
+    public MetaSearchListener(@Lazy MetaSearchService metaSearchService) {
+        this.metaSearchService = metaSearchService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Object entity) {
+        metaSearchService.update(entity);
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        metaSearchService.remove(entity);
+    }
+}
@@ -0,0 +1,100 @@
+package cn.har01d.alist_tvbox.entity;
+
+import cn.har01d.alist_tvbox.dto.MetaFilter;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class MetaSpecifications {
+    private MetaSpecifications() {
+        throw new AssertionError();
+    }
+
+    public static Specification<Meta> byFilter(MetaFilter filter) {
+        return (root, query, builder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(builder.like(root.get("path"), escape(filter.path()) + "%", '\\'));
+
+            Path<Integer> score = root.get("score");
+            switch (filter.score()) {
+                case "normal" -> predicates.add(builder.greaterThanOrEqualTo(score, 60));
+                case "high" -> predicates.add(builder.greaterThanOrEqualTo(score, 80));
+                case "low" -> predicates.add(builder.lessThan(score, 60));
+                case "no" -> predicates.add(builder.isNull(score));
+                default -> {
+                }
+            }
+
+            if (filter.year() != null) {
+                Path<Integer> year = root.get("year");
+                predicates.add(filter.yearBefore() ? builder.lessThan(year, filter.year()) : builder.equal(year, filter.year()));
+            }
+            return builder.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    // rows after the given one in the sort order, null if a sort property is not supported.
+    // the sort must end with id, and NULL is the lowest value like in H2
+    public static Specification<Meta> after(Sort sort, Meta last) {
+        for (Sort.Order order : sort) {
+            if (!isSupported(order.getProperty())) {
+                return null;
+            }
+        }
+
+        return (root, query, builder) -> {
+            List<Predicate> or = new ArrayList<>();
+            List<Predicate> equals = new ArrayList<>();
+            for (Sort.Order order : sort) {
+                Expression<Comparable<Object>> path = getPath(root, order.getProperty());
+                Comparable<Object> value = getValue(last, order.getProperty());
+                Predicate next = order.isAscending()
+                        ? (value == null ? builder.isNotNull(path) : builder.greaterThan(path, value))
+                        : (value == null ? builder.disjunction() : builder.or(builder.lessThan(path, value), builder.isNull(path)));
+                equals.add(next);
+                or.add(builder.and(equals.toArray(new Predicate[0])));
+                equals.set(equals.size() - 1, value == null ? builder.isNull(path) : builder.equal(path, value));
+            }
+            return builder.or(or.toArray(new Predicate[0]));
+        };
+    }
+
+    private static boolean isSupported(String property) {
+        return switch (property) {
+            case "id", "name", "year", "score", "time", "movie_id", "movie.id" -> true;
+            default -> false;
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Expression<Comparable<Object>> getPath(Root<Meta> root, String property) {
+        return switch (property) {
+            case "movie_id", "movie.id" -> root.get("movie").get("id");
+            default -> root.get(property);
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparable<Object> getValue(Meta meta, String property) {
+        Object value = switch (property) {
+            case "id" -> meta.getId();
+            case "name" -> meta.getName();
+            case "year" -> meta.getYear();
+            case "score" -> meta.getScore();
+            case "time" -> meta.getTime();
+            default -> meta.getMovie() == null ? null : meta.getMovie().getId();
+        };
+        return (Comparable<Object>) value;
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -2,6 +2,7 @@ package cn.har01d.alist_tvbox.entity;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Id;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -13,6 +14,7 @@ import lombok.ToString;
 @ToString
 @RequiredArgsConstructor
 @Entity
+@EntityListeners(TitleDictionaryListener.class)
 public class Movie {
     @Id
     private Integer id;
@@ -0,0 +1,28 @@
+package cn.har01d.alist_tvbox.entity;
+
+import cn.har01d.alist_tvbox.service.SearchCacheService;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.stereotype.Component;
+
+// search results are built from sites and meta, any change to them makes the cached results stale
+@Component
+public class SearchCacheListener {
+    private final SearchCacheService searchCacheService;
+
+    public SearchCacheListener(SearchCacheService searchCacheService) {
+        this.searchCacheService = searchCacheService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        if (entity instanceof Meta) {
+            searchCacheService.invalidateLater(entity.getClass().getSimpleName());
+        } else {
+            searchCacheService.invalidate(entity.getClass().getSimpleName());
+        }
+    }
+}
@@ -2,6 +2,7 @@ package cn.har01d.alist_tvbox.entity;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -19,6 +20,7 @@ import java.util.Objects;
 @ToString
 @RequiredArgsConstructor
 @Entity
+@EntityListeners({SearchCacheListener.class, ListingCacheListener.class, SiteListener.class})
 @TableGenerator(name = "tableGenerator", table = "id_generator", pkColumnName = "entity_name", valueColumnName = "next_id", allocationSize = 1)
 public class Site {
     @Id
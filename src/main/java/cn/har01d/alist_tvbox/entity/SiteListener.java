@@ -0,0 +1,25 @@
+package cn.har01d.alist_tvbox.entity;
+
+import cn.har01d.alist_tvbox.service.SiteService;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+// the searches are cached per generation of the sites
+@Component
+public class SiteListener {
+    private final SiteService siteService;
+
+    public SiteListener(@Lazy SiteService siteService) {
+        this.siteService = siteService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Site site) {
+        siteService.onChange();
+    }
+}
@@ -0,0 +1,27 @@
+package cn.har01d.alist_tvbox.entity;
+
+import cn.har01d.alist_tvbox.service.TitleDictionaryService;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.stereotype.Component;
+
+@Component
+public class TitleDictionaryListener {
+    private final TitleDictionaryService titleDictionaryService;
+
+    public TitleDictionaryListener(TitleDictionaryService titleDictionaryService) {
+        this.titleDictionaryService = titleDictionaryService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Object entity) {
+        titleDictionaryService.update(entity);
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        titleDictionaryService.remove(entity);
+    }
+}
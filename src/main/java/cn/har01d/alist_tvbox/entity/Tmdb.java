@@ -2,6 +2,7 @@ package cn.har01d.alist_tvbox.entity;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -16,6 +17,7 @@ import lombok.ToString;
 @ToString
 @RequiredArgsConstructor
 @Entity
+@EntityListeners(TitleDictionaryListener.class)
 @TableGenerator(name = "tableGenerator", table = "id_generator", pkColumnName = "entity_name", valueColumnName = "next_id", allocationSize = 1)
 public class Tmdb {
     @Id
@@ -2,10 +2,25 @@ package cn.har01d.alist_tvbox.entity;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface TmdbMetaRepository extends JpaRepository<TmdbMeta, Integer> {
+    @EntityGraph(attributePaths = "tmdb")
     TmdbMeta findByPath(String path);
 
+    @EntityGraph(attributePaths = "tmdb")
+    List<TmdbMeta> findByPathIn(Collection<String> paths);
+
+    @EntityGraph(attributePaths = "tmdb")
+    List<TmdbMeta> findByIdGreaterThan(Integer id, Pageable pageable);
+
+    @EntityGraph(attributePaths = "tmdb")
     Page<TmdbMeta> findByPathContains(String text, Pageable pageable);
+
+    @EntityGraph(attributePaths = "tmdb")
+    Page<TmdbMeta> findByIdInAndPathContains(Collection<Integer> ids, String text, Pageable pageable);
 }
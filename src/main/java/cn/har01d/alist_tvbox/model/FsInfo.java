@@ -1,7 +1,15 @@
 package cn.har01d.alist_tvbox.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
 
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+
+@Slf4j
 @Data
 public class FsInfo {
     private String name;
@@ -10,4 +18,28 @@ public class FsInfo {
     private String thumb;
     private String thumbnail;
     private String modified;
+    // the local time of modified, only converted when it is read
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private volatile String localModified;
+
+    public void setModified(String modified) {
+        this.modified = modified;
+        this.localModified = null;
+    }
+
+    public String getModified() {
+        String time = localModified;
+        if (time == null) {
+            time = modified;
+            try {
+                time = OffsetDateTime.parse(modified).toLocalDateTime().truncatedTo(ChronoUnit.SECONDS).toString();
+            } catch (Exception e) {
+                log.debug("{}", e.getMessage());
+            }
+            localModified = time;
+        }
+        return time;
+    }
 }
@@ -1,6 +1,7 @@
 package cn.har01d.alist_tvbox.service;
 
 import cn.har01d.alist_tvbox.config.AppProperties;
+import cn.har01d.alist_tvbox.dto.CacheStats;
 import cn.har01d.alist_tvbox.dto.FileItem;
 import cn.har01d.alist_tvbox.entity.Site;
 import cn.har01d.alist_tvbox.model.FsDetail;
@@ -23,22 +24,26 @@ import cn.har01d.alist_tvbox.model.VideoPreviewResponse;
 import cn.har01d.alist_tvbox.util.Constants;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.OkHttp3ClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.Duration;
-import java.time.OffsetDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -54,16 +59,54 @@ public class AListService {
             .maximumSize(10)
             .expireAfterWrite(Duration.ofSeconds(895))
             .build();
+    // listings are served for a short time and refreshed in the background for a while longer,
+    // concurrent loads of the same key wait for one request
+    private final LoadingCache<ListKey, FsResponse> listings;
+    private final LoadingCache<ListKey, FsDetail> details;
 
     public AListService(RestTemplateBuilder builder, SiteService siteService, AppProperties appProperties) {
+        // keeps connections to every site alive between calls instead of a new connection per call
+        OkHttpClient client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(32, 5, TimeUnit.MINUTES))
+                .connectTimeout(Duration.ofSeconds(60))
+                .readTimeout(Duration.ofSeconds(60))
+                .build();
         this.restTemplate = builder
+                .requestFactory(() -> new OkHttp3ClientHttpRequestFactory(client))
                 .defaultHeader(HttpHeaders.ACCEPT, Constants.ACCEPT)
                 .defaultHeader(HttpHeaders.USER_AGENT, Constants.USER_AGENT)
-                .setConnectTimeout(Duration.ofSeconds(60))
-                .setReadTimeout(Duration.ofSeconds(60))
                 .build();
         this.siteService = siteService;
         this.appProperties = appProperties;
+        this.listings = Caffeine.newBuilder()
+                .maximumSize(appProperties.getListCacheSize())
+                .refreshAfterWrite(Duration.ofSeconds(appProperties.getListCacheTtl()))
+                .expireAfterWrite(Duration.ofSeconds(appProperties.getListCacheStale()))
+                .recordStats()
+                .build(key -> loadFiles(key.site(), key.path(), key.page(), key.size()));
+        // play urls are signed and expire, so they are never served stale.
+        // a prefetched next episode lives longer, until it is read once
+        long ttl = Duration.ofSeconds(appProperties.getListCacheTtl()).toNanos();
+        this.details = Caffeine.newBuilder()
+                .maximumSize(appProperties.getListCacheSize())
+                .expireAfter(new Expiry<ListKey, FsDetail>() {
+                    @Override
+                    public long expireAfterCreate(ListKey key, FsDetail value, long currentTime) {
+                        return ttl;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ListKey key, FsDetail value, long currentTime, long currentDuration) {
+                        return ttl;
+                    }
+
+                    @Override
+                    public long expireAfterRead(ListKey key, FsDetail value, long currentTime, long currentDuration) {
+                        return Math.min(currentDuration, ttl);
+                    }
+                })
+                .recordStats()
+                .build(key -> loadFile(key.site(), key.path()));
     }
 
     public List<SearchResult> search(Site site, String keyword) {
@@ -98,6 +141,19 @@ public class AListService {
     }
 
     public FsResponse listFiles(Site site, String path, int page, int size) {
+        return listFiles(site, path, page, size, true);
+    }
+
+    public FsResponse listFiles(Site site, String path, int page, int size, boolean cached) {
+        if (!cached) {
+            return loadFiles(site, path, page, size);
+        }
+        // may save the site, which must not happen inside a cache load
+        getVersion(site);
+        return listings.get(new ListKey(site, path, page, size));
+    }
+
+    private FsResponse loadFiles(Site site, String path, int page, int size) {
         int version = getVersion(site);
         String url = getUrl(site) + (version == 2 ? "/api/public/path" : "/api/fs/list");
         FsRequest request = new FsRequest();
@@ -127,13 +183,6 @@ public class AListService {
             response.setFiles(response.getContent());
         }
         response.setFiles(filter(response.getFiles()));
-        for (var file : response.getFiles()) {
-            try {
-                file.setModified(OffsetDateTime.parse(file.getModified()).toLocalDateTime().truncatedTo(ChronoUnit.SECONDS).toString());
-            } catch (Exception e) {
-                log.debug("{}", e.getMessage());
-            }
-        }
         return response;
     }
 
@@ -195,6 +244,24 @@ public class AListService {
     }
 
     public FsDetail getFile(Site site, String path) {
+        getVersion(site);
+        return details.get(new ListKey(site, path, 0, 0));
+    }
+
+    // loads the file ahead of the play request, kept for app.prefetch-file-ttl instead of the listing ttl
+    public void prefetchFile(Site site, String path) {
+        getVersion(site);
+        ListKey key = new ListKey(site, path, 0, 0);
+        if (details.asMap().containsKey(key)) {
+            return;
+        }
+        FsDetail fsDetail = loadFile(site, path);
+        if (fsDetail != null) {
+            details.policy().expireVariably().ifPresent(e -> e.put(key, fsDetail, Duration.ofSeconds(appProperties.getPrefetchFileTtl())));
+        }
+    }
+
+    private FsDetail loadFile(Site site, String path) {
         int version = getVersion(site);
         if (version == 2) {
             return getFileV2(site, path);
@@ -249,6 +316,23 @@ public class AListService {
         return null;
     }
 
+    public void invalidate(Integer siteId, String reason) {
+        log.debug("invalidate listing cache of site {}: {}", siteId, reason);
+        listings.asMap().keySet().removeIf(key -> siteId.equals(key.site().getId()));
+        details.asMap().keySet().removeIf(key -> siteId.equals(key.site().getId()));
+    }
+
+    public void invalidateAll(String reason) {
+        log.debug("invalidate listing cache: {}", reason);
+        listings.invalidateAll();
+        details.invalidateAll();
+    }
+
+    public CacheStats getListingStats() {
+        var stats = listings.stats().plus(details.stats());
+        return new CacheStats(listings.estimatedSize() + details.estimatedSize(), stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount());
+    }
+
     private Integer getVersion(Site site) {
         if (site.getVersion() != null) {
             return site.getVersion();
@@ -302,4 +386,8 @@ public class AListService {
             log.warn("error {} {}", response.getCode(), response.getMessage());
         }
     }
+
+    // sites are equal by id, edits invalidate the entries of the site
+    private record ListKey(Site site, String path, int page, int size) {
+    }
 }
@@ -20,6 +20,7 @@ import cn.har01d.alist_tvbox.exception.NotFoundException;
 import cn.har01d.alist_tvbox.tvbox.MovieDetail;
 import cn.har01d.alist_tvbox.util.Constants;
 import cn.har01d.alist_tvbox.util.TextUtils;
+import cn.har01d.alist_tvbox.util.TokenBucket;
 import cn.har01d.alist_tvbox.util.Utils;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -39,6 +40,7 @@ import org.springframework.core.env.Environment;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpHeaders;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -47,21 +49,32 @@ import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URLEncoder;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static cn.har01d.alist_tvbox.util.Constants.MOVIE_VERSION;
@@ -76,6 +89,9 @@ public class DoubanService {
     private static final Pattern NUMBER1 = Pattern.compile("第(\\d{1,2})季");
     private static final Pattern YEAR_PATTERN = Pattern.compile("\\((\\d{4})\\)");
     private static final Pattern YEAR2_PATTERN = Pattern.compile("(\\d{4})");
+    private static final int SCRAPE_BATCH_SIZE = 200;
+    // marks an index line that needs a request to douban.com
+    private static final Movie REMOTE = new Movie();
     private static final String DB_PREFIX = "https://movie.douban.com/subject/";
     private static final String[] tokens = new String[]{"导演:", "编剧:", "主演:", "类型:", "制片国家/地区:", "语言:", "上映日期:",
             "片长:", "又名:", "IMDb链接:", "官方网站:", "官方小站:", "首播:", "季数:", "集数:", "单集片长:"};
@@ -87,12 +103,17 @@ public class DoubanService {
     private final SettingRepository settingRepository;
     private final SiteService siteService;
     private final TaskService taskService;
+    private final TaskScheduler scheduler;
 
     private final RestTemplate restTemplate;
     private final JdbcTemplate jdbcTemplate;
     private final Environment environment;
+    private final TitleDictionaryService titleDictionaryService;
+    private final MetaSearchService metaSearchService;
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
     private final OkHttpClient client = new OkHttpClient();
+    // shared by all requests to douban.com
+    private final TokenBucket limiter;
 
     private volatile boolean downloading;
 
@@ -103,9 +124,12 @@ public class DoubanService {
                          SettingRepository settingRepository,
                          SiteService siteService,
                          TaskService taskService,
+                         TaskScheduler scheduler,
                          RestTemplateBuilder builder,
                          JdbcTemplate jdbcTemplate,
-                         Environment environment) {
+                         Environment environment,
+                         TitleDictionaryService titleDictionaryService,
+                         MetaSearchService metaSearchService) {
         this.appProperties = appProperties;
         this.metaRepository = metaRepository;
         this.movieRepository = movieRepository;
@@ -113,12 +137,16 @@ public class DoubanService {
         this.settingRepository = settingRepository;
         this.siteService = siteService;
         this.taskService = taskService;
+        this.scheduler = scheduler;
         this.restTemplate = builder
                 .defaultHeader(HttpHeaders.ACCEPT, Constants.ACCEPT)
                 .defaultHeader(HttpHeaders.USER_AGENT, USER_AGENT)
                 .build();
         this.jdbcTemplate = jdbcTemplate;
         this.environment = environment;
+        this.titleDictionaryService = titleDictionaryService;
+        this.metaSearchService = metaSearchService;
+        this.limiter = TokenBucket.ofInterval(appProperties.getDoubanInterval());
     }
 
     @PostConstruct
@@ -170,6 +198,8 @@ public class DoubanService {
                     log.warn("execute sql failed: {}", e);
                 }
                 Files.delete(path);
+                titleDictionaryService.reload();
+                metaSearchService.reload();
             }
         } catch (Exception e) {
             log.warn("", e);
@@ -260,6 +290,8 @@ public class DoubanService {
             if (code == 0) {
                 log.info("movie data downloaded");
                 getSqlFiles(local).forEach(this::upgradeSqlFile);
+                titleDictionaryService.reload();
+                metaSearchService.reload();
             } else {
                 log.warn("download movie data failed: {}", code);
             }
@@ -327,6 +359,21 @@ public class DoubanService {
         return null;
     }
 
+    // one query for all paths, instead of one for every path
+    public Map<String, Movie> getByPaths(Collection<String> paths) {
+        Map<String, Movie> movies = new HashMap<>();
+        try {
+            for (Meta meta : metaRepository.findByPathIn(paths)) {
+                if (meta.getMovie() != null) {
+                    movies.put(meta.getPath(), meta.getMovie());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("", e);
+        }
+        return movies;
+    }
+
     public List<MovieDetail> getHotRank() {
         List<MovieDetail> list = new ArrayList<>();
         Map<String, Object> request = new HashMap<>();
@@ -374,13 +421,42 @@ public class DoubanService {
 
     public Movie getByName(String name) {
         try {
-            Alias alias = aliasRepository.findById(name).orElse(null);
-            if (alias != null) {
-                log.debug("name: {} alias: {}", name, alias.getAlias());
-                return alias.getMovie();
-            }
+            return titleDictionaryService.getMovie(name, this::findByName);
+        } catch (Exception e) {
+            log.warn("", e);
+        }
+        return null;
+    }
 
-            name = TextUtils.fixName(name);
+    private Movie findByName(String name) {
+        if (titleDictionaryService.isReady()) {
+            Integer id = titleDictionaryService.findMovie(name);
+            return id == null ? null : movieRepository.findById(id).orElse(null);
+        }
+
+        Alias alias = aliasRepository.findById(name).orElse(null);
+        if (alias != null) {
+            log.debug("name: {} alias: {}", name, alias.getAlias());
+            return alias.getMovie();
+        }
+
+        name = TextUtils.fixName(name);
+
+        alias = aliasRepository.findById(name).orElse(null);
+        if (alias != null) {
+            log.debug("name: {} alias: {}", name, alias.getAlias());
+            return alias.getMovie();
+        }
+
+        List<Movie> movies = movieRepository.getByName(name);
+        if (movies != null && !movies.isEmpty()) {
+            return movies.get(0);
+        }
+
+        String newName = TextUtils.updateName(name);
+        if (!newName.equals(name)) {
+            name = newName;
+            log.debug("search by name: {}", name);
 
             alias = aliasRepository.findById(name).orElse(null);
             if (alias != null) {
@@ -388,29 +464,10 @@ public class DoubanService {
                 return alias.getMovie();
             }
 
-            List<Movie> movies = movieRepository.getByName(name);
+            movies = movieRepository.getByName(name);
             if (movies != null && !movies.isEmpty()) {
                 return movies.get(0);
             }
-
-            String newName = TextUtils.updateName(name);
-            if (!newName.equals(name)) {
-                name = newName;
-                log.debug("search by name: {}", name);
-
-                alias = aliasRepository.findById(name).orElse(null);
-                if (alias != null) {
-                    log.debug("name: {} alias: {}", name, alias.getAlias());
-                    return alias.getMovie();
-                }
-
-                movies = movieRepository.getByName(name);
-                if (movies != null && !movies.isEmpty()) {
-                    return movies.get(0);
-                }
-            }
-        } catch (Exception e) {
-            log.warn("", e);
         }
         return null;
     }
@@ -483,34 +540,61 @@ public class DoubanService {
     }
 
     public void scrapeIndexFile(Task task, List<String> lines, boolean force) {
-        int count = 0;
-        Set<String> failed = loadFailed();
-        List<String> paths = new ArrayList<>();
+        Set<String> failed = ConcurrentHashMap.newKeySet();
+        failed.addAll(loadFailed());
+        List<String> paths = Collections.synchronizedList(new ArrayList<>());
         log.debug("load {} failed names", failed.size());
         taskService.startTask(task.getId());
 
-        for (int i = 0; i < lines.size(); i++) {
-            if (isCancelled(task.getId())) {
-                break;
-            }
-            String line = lines.get(i).trim();
-            if (line.isEmpty() || line.startsWith("-") || line.startsWith("+")) {
-                continue;
-            }
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, appProperties.getScrapeThreads()));
+        try (TaskProgress progress = new TaskProgress(taskService, scheduler, task.getId(), null, Duration.ofMillis(appProperties.getTaskUpdateInterval()))) {
+            ScrapeState state = new ScrapeState(force, failed, paths, new AtomicInteger(), progress);
+            for (int start = 0; start < lines.size() && !isCancelled(task.getId()); start += SCRAPE_BATCH_SIZE) {
+                // one line for each path, the workers would update the same meta otherwise
+                Set<String> batch = new HashSet<>();
+                List<Integer> ids = IntStream.range(start, Math.min(start + SCRAPE_BATCH_SIZE, lines.size()))
+                        .filter(i -> isIndexLine(lines.get(i).trim()))
+                        .filter(i -> batch.add(getIndexPath(lines.get(i))))
+                        .boxed()
+                        .toList();
+                Map<String, Meta> metas = metaRepository.findByPathIn(ids.stream().map(i -> getIndexPath(lines.get(i))).toList())
+                        .stream()
+                        .collect(Collectors.toMap(Meta::getPath, Function.identity(), (a, b) -> a));
+                List<Meta> updated = Collections.synchronizedList(new ArrayList<>());
+
+                // names known locally are resolved on the workers, only the misses go to douban.com
+                List<Future<Boolean>> locals = new ArrayList<>();
+                for (Integer i : ids) {
+                    locals.add(workers.submit(() -> scrapeLine(i, lines.get(i).trim(), metas, updated, state, false)));
+                }
+                List<Integer> misses = new ArrayList<>();
+                for (int k = 0; k < ids.size(); k++) {
+                    if (locals.get(k).get()) {
+                        misses.add(ids.get(k));
+                    }
+                }
 
-            try {
-                log.debug("handle {} {}", i, line);
-                taskService.updateTaskSummary(task.getId(), (i + 1) + ":" + line);
-                Movie movie = handleIndexLine(i, line, force, failed);
-                if (movie != null) {
-                    count++;
-                    taskService.updateTaskData(task.getId(), "成功刮削数量：" + count);
-                } else {
-                    paths.add(line.split("#")[0]);
+                List<Future<?>> futures = new ArrayList<>();
+                for (Integer i : misses) {
+                    futures.add(workers.submit(() -> {
+                        if (!isCancelled(task.getId())) {
+                            scrapeLine(i, lines.get(i).trim(), metas, updated, state, true);
+                        }
+                    }));
                 }
-            } catch (Exception e) {
-                log.warn("{}: {}", i, line, e);
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+
+                saveMetas(updated);
             }
+            progress.updateData("成功刮削数量：" + state.count().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("scrape failed", e);
+        } finally {
+            workers.shutdownNow();
         }
 
         taskService.completeTask(task.getId());
@@ -519,6 +603,49 @@ public class DoubanService {
         writeText("/data/atv/failed.txt", String.join("\n", failed));
     }
 
+    private static boolean isIndexLine(String line) {
+        return !line.isEmpty() && !line.startsWith("-") && !line.startsWith("+");
+    }
+
+    private static String getIndexPath(String line) {
+        return line.trim().split("#")[0];
+    }
+
+    // returns true if the line is not found locally and remote is false
+    private boolean scrapeLine(int id, String line, Map<String, Meta> metas, List<Meta> updated, ScrapeState state, boolean remote) {
+        try {
+            log.debug("handle {} {}", id, line);
+            state.progress().updateSummary((id + 1) + ":" + line);
+            String path = getIndexPath(line);
+            Movie movie = handleIndexLine(id, line, metas.get(path), state.force(), state.failed(), updated, remote);
+            if (movie == REMOTE) {
+                return true;
+            }
+            if (movie != null) {
+                state.progress().updateData("成功刮削数量：" + state.count().incrementAndGet());
+            } else {
+                state.paths().add(path);
+            }
+        } catch (Exception e) {
+            log.warn("{}: {}", id, line, e);
+        }
+        return false;
+    }
+
+    private void saveMetas(List<Meta> metas) {
+        if (metas.isEmpty()) {
+            return;
+        }
+        try {
+            metaRepository.upsertAll(metas);
+        } catch (Exception e) {
+            log.warn("save {} meta failed", metas.size(), e);
+        }
+    }
+
+    private record ScrapeState(boolean force, Set<String> failed, List<String> paths, AtomicInteger count, TaskProgress progress) {
+    }
+
     private static void writeText(String path, String content) {
         try {
             Files.writeString(Paths.get(path), content);
@@ -527,11 +654,10 @@ public class DoubanService {
         }
     }
 
-    private Movie handleIndexLine(int id, String path, boolean force, Set<String> failed) {
+    private Movie handleIndexLine(int id, String path, Meta meta, boolean force, Set<String> failed, List<Meta> updated, boolean remote) {
         String[] parts = path.split("#");
         path = parts[0];
 
-        Meta meta = metaRepository.findByPath(path);
         if (meta == null) {
             meta = new Meta();
             meta.setPath(path);
@@ -549,7 +675,11 @@ public class DoubanService {
             log.debug("{} {}", name, number);
             if (number.length() > 5) {
                 try {
-                    movie = getById(Integer.parseInt(number));
+                    Integer movieId = Integer.parseInt(number);
+                    if (!remote && !movieRepository.existsById(movieId)) {
+                        return REMOTE;
+                    }
+                    movie = getById(movieId);
                 } catch (Exception e) {
                     log.warn("{} {}", id + 1, path, e);
                 }
@@ -577,7 +707,7 @@ public class DoubanService {
 
         if (movie != null && TextUtils.isNormal(name) && TextUtils.isNormal(movie.getName())) {
             log.info("[{}] - add {} {} for path {}", id, movie.getId(), movie.getName(), path);
-            return updateMeta(path, meta, movie);
+            return updateMeta(path, meta, movie, updated);
         }
 
         if (name.startsWith("Season ")) {
@@ -626,6 +756,10 @@ public class DoubanService {
                 return null;
             }
 
+            if (!remote) {
+                return REMOTE;
+            }
+
             try {
                 log.info("[{}] handle name: {} - path: {}", id, newname, path);
                 movie = search(newname, getYearFromPath(path));
@@ -633,12 +767,6 @@ public class DoubanService {
                 throw e;
             } catch (Exception e) {
                 throw new RuntimeException(e);
-            } finally {
-                try {
-                    Thread.sleep(2000L);
-                } catch (InterruptedException e) {
-                    Thread.interrupted();
-                }
             }
 
             if (failed.contains(getParent(path))) {
@@ -646,22 +774,14 @@ public class DoubanService {
             }
 
             if (movie != null && TextUtils.isNormal(movie.getName())) {
-                meta.setPath(path);
-                meta.setMovie(movie);
-                meta.setYear(movie.getYear());
-                meta.setName(movie.getName());
-                if (StringUtils.isNotBlank(movie.getDbScore())) {
-                    meta.setScore((int) (Double.parseDouble(movie.getDbScore()) * 10));
-                }
-                metaRepository.save(meta);
                 log.info("{} - add {} '{}' for path {}", id, movie.getId(), movie.getName(), path);
-                return movie;
+                return updateMeta(path, meta, movie, updated);
             }
         }
 
         if (movie != null && TextUtils.isNormal(name) && TextUtils.isNormal(movie.getName())) {
             log.info("[{}] add {} {} for path {}", id, movie.getId(), movie.getName(), path);
-            return updateMeta(path, meta, movie);
+            return updateMeta(path, meta, movie, updated);
         } else {
             log.debug("add failed: {}", name);
             failed.add(name);
@@ -675,7 +795,7 @@ public class DoubanService {
         return task.getStatus() == TaskStatus.COMPLETED && task.getResult() == TaskResult.CANCELLED;
     }
 
-    private Movie updateMeta(String path, Meta meta, Movie movie) {
+    private Movie updateMeta(String path, Meta meta, Movie movie, List<Meta> updated) {
         meta.setPath(path);
         meta.setMovie(movie);
         meta.setYear(movie.getYear());
@@ -683,7 +803,7 @@ public class DoubanService {
         if (StringUtils.isNotBlank(movie.getDbScore())) {
             meta.setScore((int) (Double.parseDouble(movie.getDbScore()) * 10));
         }
-        metaRepository.save(meta);
+        updated.add(meta);
         return movie;
     }
 
@@ -914,6 +1034,13 @@ public class DoubanService {
     }
 
     private String getHtml(String url) throws IOException {
+        try {
+            limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(url);
+        }
+
         Request request = new Request.Builder()
                 .url(url)
                 .addHeader("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,image/apng,*/*;q=0.8,application/signed-exchange;v=b3;q=0.7")
@@ -4,6 +4,7 @@ import cn.har01d.alist_tvbox.exception.BadRequestException;
 import cn.har01d.alist_tvbox.util.Utils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -11,9 +12,11 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -24,6 +27,14 @@ import java.util.zip.ZipOutputStream;
 @Slf4j
 @Service
 public class IndexFileService {
+    private final IndexSearchService indexSearchService;
+    private final SearchCacheService searchCacheService;
+
+    public IndexFileService(IndexSearchService indexSearchService, SearchCacheService searchCacheService) {
+        this.indexSearchService = indexSearchService;
+        this.searchCacheService = searchCacheService;
+    }
+
     public Page<String> getIndexContent(Pageable pageable, String siteId, String index) throws IOException {
         List<String> list = new ArrayList<>();
         Path file = Paths.get("/data/index", siteId, index + ".txt");
@@ -31,19 +42,21 @@ public class IndexFileService {
             return new PageImpl<>(list);
         }
 
-        List<String> lines = Files.readAllLines(file);
+        // the admin view only pages through the file, it does not need the search postings
         int size = pageable.getPageSize();
-        int start = pageable.getPageNumber() * size;
-        int end = start + size;
-        if (end > lines.size()) {
-            end = lines.size();
-        }
-
-        if (start < end) {
-            list = lines.subList(start, end);
+        long start = (long) pageable.getPageNumber() * size;
+        long total = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (total >= start && total < start + size) {
+                    list.add(line);
+                }
+                total++;
+            }
         }
 
-        return new PageImpl<>(list, pageable, lines.size());
+        return new PageImpl<>(list, pageable, total);
     }
 
     public void toggleExcluded(String siteId, int index, String indexName) throws IOException {
@@ -69,7 +82,11 @@ public class IndexFileService {
             line = "-" + line;
         }
         lines.set(index, line);
-        Files.writeString(file, String.join("\n", lines));
+        // the search index maps the file, so it is replaced instead of rewritten
+        Path temp = Files.createTempFile(file.getParent(), indexName, ".tmp");
+        Files.writeString(temp, String.join("\n", lines));
+        indexSearchService.swap(temp, file);
+        searchCacheService.invalidate("index file " + file);
     }
 
     public FileSystemResource downloadIndexFile(String siteId) throws IOException {
@@ -83,6 +100,25 @@ public class IndexFileService {
         return new FileSystemResource(out);
     }
 
+    public FileSystemResource exportIndexFile(String siteId, String indexName, String prefix) throws IOException {
+        Path path = Paths.get("/data/index", siteId, indexName + ".txt");
+        if (!Files.exists(path)) {
+            throw new BadRequestException("索引文件不存在");
+        }
+
+        // written back from the compact sorted index, the prefix is found by a binary search. excluded lines are left out
+        File out = new File("/tmp/" + indexName + ".txt");
+        try (Writer writer = Files.newBufferedWriter(out.toPath())) {
+            indexSearchService.getIndex(path).forEach(StringUtils.isBlank(prefix) ? "" : prefix, line -> {
+                if (!line.startsWith("-")) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            });
+        }
+        return new FileSystemResource(out);
+    }
+
     public void uploadIndexFile(String siteId, String indexName, MultipartFile file) throws IOException {
         Path temp = Paths.get("/tmp/index.txt");
         try {
@@ -94,11 +130,13 @@ public class IndexFileService {
 
             lines = lines.stream().map(e -> e.startsWith("./") ? e.substring(1) : e).toList();
             Path path = Paths.get("/data/index", siteId, indexName + ".txt");
-            if (!Files.exists(path)) {
-                Files.createDirectories(path.getParent());
-                Files.createFile(path);
-            }
-            Files.writeString(path, String.join("\n", lines));
+            Files.createDirectories(path.getParent());
+            Path target = Files.createTempFile(path.getParent(), indexName, ".tmp");
+            Files.writeString(target, String.join("\n", lines));
+            indexSearchService.swap(target, path);
+            Files.deleteIfExists(Paths.get("/data/index", siteId, indexName + ".manifest"));
+            Files.deleteIfExists(Paths.get("/data/index", siteId, indexName + ".ckpt"));
+            searchCacheService.invalidate("index file " + path);
             log.info("上传索引文件成功： {}", path);
         } finally {
             Files.delete(temp);
@@ -112,5 +150,9 @@ public class IndexFileService {
     public void deleteIndexFile(String siteId, String indexName) throws IOException {
         Path path = Paths.get("/data/index", siteId, indexName + ".txt");
         Files.delete(path);
+        Files.deleteIfExists(Paths.get("/data/index", siteId, indexName + ".manifest"));
+        Files.deleteIfExists(Paths.get("/data/index", siteId, indexName + ".ckpt"));
+        indexSearchService.invalidate(path);
+        searchCacheService.invalidate("index file " + path);
     }
 }
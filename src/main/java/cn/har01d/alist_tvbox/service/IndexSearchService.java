@@ -0,0 +1,93 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.tvbox.SearchIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Service
+public class IndexSearchService {
+    private final Path indexDir = Paths.get("/data/atv/search");
+    private final Map<String, SearchIndex> indexes = new ConcurrentHashMap<>();
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    // the best lines of the index file for the keyword, the best first
+    public List<String> search(String indexFile, String keyword, int limit) throws IOException {
+        // index files are only replaced by swap, never rewritten in place, so a mapped file is not truncated
+        return getIndex(Paths.get(indexFile)).search(keyword, limit);
+    }
+
+    public void invalidate(Path indexFile) {
+        String key = indexFile.toAbsolutePath().toString();
+        synchronized (lock(key)) {
+            if (indexes.remove(key) != null) {
+                log.debug("invalidate search index: {}", key);
+            }
+            try {
+                Files.deleteIfExists(SearchIndex.getIndexPath(indexFile, indexDir));
+            } catch (IOException e) {
+                log.warn("delete search index of {} failed", key, e);
+            }
+        }
+    }
+
+    public void swap(Path temp, Path target) throws IOException {
+        String key = target.toAbsolutePath().toString();
+        refreshing.add(key);
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // every new index file gets its compact sorted form right away, not on the first search
+            synchronized (lock(key)) {
+                long start = System.currentTimeMillis();
+                try {
+                    SearchIndex index = SearchIndex.load(target, indexDir, Files.getLastModifiedTime(target).toMillis(), Files.size(target));
+                    indexes.put(key, index);
+                    log.info("build search index {}: {} lines in {}ms", key, index.size(), System.currentTimeMillis() - start);
+                } catch (IOException e) {
+                    // the index file is in place, the next search builds it again
+                    log.warn("build search index {} failed", key, e);
+                }
+            }
+        } finally {
+            refreshing.remove(key);
+        }
+    }
+
+    public SearchIndex getIndex(Path path) throws IOException {
+        String key = path.toAbsolutePath().toString();
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        long size = Files.size(path);
+        SearchIndex index = indexes.get(key);
+        // while a new file is being swapped in, keep serving the old index
+        if (index != null && (index.isValid(modified, size) || refreshing.contains(key))) {
+            return index;
+        }
+
+        synchronized (lock(key)) {
+            index = indexes.get(key);
+            if (index == null || !index.isValid(modified, size)) {
+                long start = System.currentTimeMillis();
+                index = SearchIndex.load(path, indexDir, modified, size);
+                indexes.put(key, index);
+                log.info("load search index {}: {} lines in {}ms", key, index.size(), System.currentTimeMillis() - start);
+            }
+        }
+        return index;
+    }
+
+    // the locks are kept for good, one per index file, so two threads never hold different locks for the same file
+    private Object lock(String key) {
+        return locks.computeIfAbsent(key, k -> new Object());
+    }
+}
@@ -7,10 +7,12 @@ import cn.har01d.alist_tvbox.dto.AliFileList;
 import cn.har01d.alist_tvbox.dto.FileItem;
 import cn.har01d.alist_tvbox.dto.IndexRequest;
 import cn.har01d.alist_tvbox.dto.IndexResponse;
+import cn.har01d.alist_tvbox.dto.MetaFilter;
 import cn.har01d.alist_tvbox.entity.IndexTemplate;
 import cn.har01d.alist_tvbox.entity.IndexTemplateRepository;
 import cn.har01d.alist_tvbox.entity.Meta;
 import cn.har01d.alist_tvbox.entity.MetaRepository;
+import cn.har01d.alist_tvbox.entity.MetaSpecifications;
 import cn.har01d.alist_tvbox.entity.Setting;
 import cn.har01d.alist_tvbox.entity.SettingRepository;
 import cn.har01d.alist_tvbox.entity.Site;
@@ -19,15 +21,17 @@ import cn.har01d.alist_tvbox.exception.BadRequestException;
 import cn.har01d.alist_tvbox.model.FsInfo;
 import cn.har01d.alist_tvbox.model.FsResponse;
 import cn.har01d.alist_tvbox.model.ShareInfo;
+import cn.har01d.alist_tvbox.tvbox.IndexCheckpoint;
 import cn.har01d.alist_tvbox.tvbox.IndexContext;
+import cn.har01d.alist_tvbox.tvbox.IndexManifest;
 import cn.har01d.alist_tvbox.util.Constants;
 import cn.har01d.alist_tvbox.util.TextUtils;
+import cn.har01d.alist_tvbox.util.TokenBucket;
 import cn.har01d.alist_tvbox.util.Utils;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.core.env.Environment;
@@ -36,6 +40,7 @@ import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -44,34 +49,50 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalTime;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import static cn.har01d.alist_tvbox.util.Constants.APP_VERSION;
@@ -88,6 +109,7 @@ public class IndexService {
     private static final Pattern SEASON4 = Pattern.compile("第.{1,3}季.*");
     private static final Pattern EPISODE = Pattern.compile("S\\d+E\\d+");
     private static final Pattern EPISODE1 = Pattern.compile("全\\d+集");
+    private static final long CHECKPOINT_INTERVAL = 30_000;
 
     private final AListService aListService;
     private final SiteService siteService;
@@ -101,7 +123,14 @@ public class IndexService {
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
     private final Environment environment;
+    private final TaskScheduler scheduler;
+    private final SearchCacheService searchCacheService;
+    private final IndexSearchService indexSearchService;
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ExecutorService downloader = Executors.newFixedThreadPool(2);
+    private final Set<Integer> downloading = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, TokenBucket> limiters = new ConcurrentHashMap<>();
+    private final Map<Integer, TokenBucket> shareLimiters = new ConcurrentHashMap<>();
 
     public IndexService(AListService aListService,
                         SiteService siteService,
@@ -114,7 +143,10 @@ public class IndexService {
                         MetaRepository metaRepository,
                         RestTemplateBuilder builder,
                         ObjectMapper objectMapper,
-                        Environment environment) {
+                        Environment environment,
+                        TaskScheduler scheduler,
+                        SearchCacheService searchCacheService,
+                        IndexSearchService indexSearchService) {
         this.aListService = aListService;
         this.siteService = siteService;
         this.taskService = taskService;
@@ -129,6 +161,9 @@ public class IndexService {
                 .defaultHeader(HttpHeaders.USER_AGENT, Constants.USER_AGENT1)
                 .build();
         this.objectMapper = objectMapper;
+        this.scheduler = scheduler;
+        this.searchCacheService = searchCacheService;
+        this.indexSearchService = indexSearchService;
         this.environment = environment;
         updateIndexFile();
     }
@@ -218,6 +253,7 @@ public class IndexService {
             if (code == 0) {
                 log.info("xiaoya index file updated");
                 settingRepository.save(new Setting(INDEX_VERSION, remote));
+                searchCacheService.invalidate("xiaoya index file");
             } else {
                 log.warn("download xiaoya index file failed: {}", code);
             }
@@ -226,57 +262,124 @@ public class IndexService {
         }
     }
 
+    @Scheduled(initialDelay = 3600_000, fixedDelay = 3600_000)
     public void updateIndexFile() {
         for (Site site : siteService.list()) {
             if (site.isSearchable() && StringUtils.isNotBlank(site.getIndexFile())) {
-                try {
-                    downloadIndexFile(site, true);
-                } catch (Exception e) {
-                    log.warn("", e);
-                }
+                refreshIndexFileAsync(site);
             }
         }
     }
 
     public void updateIndexFile(Integer siteId) throws IOException {
         Site site = siteService.getById(siteId);
-        downloadIndexFile(site, true);
+        refreshIndexFile(site);
     }
 
-    public String downloadIndexFile(Site site) throws IOException {
-        return downloadIndexFile(site, false);
-    }
-
-    public String downloadIndexFile(Site site, boolean update) throws IOException {
+    // never blocks a search on a download, the file is refreshed in the background
+    public String downloadIndexFile(Site site) {
         String url = site.getIndexFile();
         if (!url.startsWith("http")) {
             return url;
         }
 
+        File file = getLocalIndexFile(site, url);
+        if (file.exists()) {
+            return file.getAbsolutePath();
+        }
+
+        refreshIndexFileAsync(site);
+        return null;
+    }
+
+    private void refreshIndexFileAsync(Site site) {
+        if (!downloading.add(site.getId())) {
+            return;
+        }
+        downloader.execute(() -> {
+            try {
+                refreshIndexFile(site);
+            } catch (Exception e) {
+                log.warn("refresh index file failed: {}", site.getIndexFile(), e);
+            } finally {
+                downloading.remove(site.getId());
+            }
+        });
+    }
+
+    private File getLocalIndexFile(Site site, String url) {
         String name = getIndexFileName(url);
-        String filename = name;
         if (name.endsWith(".zip")) {
-            filename = name.substring(0, name.length() - 4) + ".txt";
+            name = name.substring(0, name.length() - 4) + ".txt";
         }
+        return new File(".cache/" + site.getId() + "/" + name);
+    }
 
-        File file = new File(".cache/" + site.getId() + "/" + filename);
-        if (!update && file.exists()) {
-            return file.getAbsolutePath();
+    private boolean refreshIndexFile(Site site) throws IOException {
+        String url = site.getIndexFile();
+        if (!url.startsWith("http")) {
+            return false;
         }
 
-        if (name.endsWith(".zip")) {
-            if (unchanged(site, url, name)) {
-                return file.getAbsolutePath();
+        String name = getIndexFileName(url);
+        File file = getLocalIndexFile(site, url);
+        Path dir = file.getParentFile().toPath();
+        Files.createDirectories(dir);
+        if (name.endsWith(".zip") && file.exists() && unchanged(site, url, name)) {
+            return false;
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(30_000);
+        connection.setReadTimeout(60_000);
+        if (file.exists()) {
+            connection.setIfModifiedSince(file.lastModified());
+        }
+
+        Map<Path, Path> files = new LinkedHashMap<>();
+        try {
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                log.debug("index file not modified: {}", url);
+                return false;
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("download index file failed: " + code + " " + url);
             }
 
             log.info("download index file from {}", url);
-            downloadZipFile(site, url, name);
-        } else {
-            log.info("download index file from {}", url);
-            FileUtils.copyURLToFile(new URL(url), file);
+            try (InputStream in = connection.getInputStream()) {
+                if (name.endsWith(".zip")) {
+                    unzip(in, dir, files);
+                } else {
+                    Path temp = dir.resolve(file.getName() + ".tmp");
+                    Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                    files.put(temp, file.toPath());
+                }
+            }
+
+            long modified = connection.getLastModified();
+            for (var e : files.entrySet()) {
+                if (modified > 0) {
+                    Files.setLastModifiedTime(e.getKey(), FileTime.fromMillis(modified));
+                }
+                if (e.getValue().toString().endsWith(".txt")) {
+                    indexSearchService.swap(e.getKey(), e.getValue());
+                } else {
+                    Files.move(e.getKey(), e.getValue(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            files.clear();
+        } finally {
+            connection.disconnect();
+            for (Path temp : files.keySet()) {
+                Files.deleteIfExists(temp);
+            }
         }
 
-        return file.getAbsolutePath();
+        searchCacheService.invalidate("index file " + file);
+        aListService.invalidate(site.getId(), "index file " + file);
+        return true;
     }
 
     private static boolean unchanged(Site site, String url, String name) {
@@ -309,31 +412,22 @@ public class IndexService {
         return "";
     }
 
-    private static void downloadZipFile(Site site, String url, String name) throws IOException {
-        File zipFile = new File(".cache/" + site.getId() + "/" + name);
-        FileUtils.copyURLToFile(new URL(url), zipFile);
-        unzip(zipFile);
-        Files.delete(zipFile.toPath());
-    }
-
-    public static void unzip(File file) throws IOException {
-        Path destFolderPath = Paths.get(file.getParent());
-
-        try (ZipFile zipFile = new ZipFile(file, ZipFile.OPEN_READ, StandardCharsets.UTF_8)) {
-            Enumeration<? extends ZipEntry> entries = zipFile.entries();
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                Path entryPath = destFolderPath.resolve(entry.getName());
-                if (entryPath.normalize().startsWith(destFolderPath.normalize())) {
-                    if (entry.isDirectory()) {
-                        Files.createDirectories(entryPath);
-                    } else {
-                        Files.createDirectories(entryPath.getParent());
-                        try (InputStream in = zipFile.getInputStream(entry);
-                             OutputStream out = Files.newOutputStream(entryPath.toFile().toPath())) {
-                            IOUtils.copy(in, out);
-                        }
-                    }
+    // entries are extracted to temp files while the body is still downloading
+    private static void unzip(InputStream in, Path dir, Map<Path, Path> files) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(in, StandardCharsets.UTF_8)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                Path entryPath = dir.resolve(entry.getName());
+                if (!entryPath.normalize().startsWith(dir.normalize())) {
+                    continue;
+                }
+                if (entry.isDirectory()) {
+                    Files.createDirectories(entryPath);
+                } else {
+                    Files.createDirectories(entryPath.getParent());
+                    Path temp = entryPath.resolveSibling(entryPath.getFileName() + ".tmp");
+                    files.put(temp, entryPath);
+                    Files.copy(zip, temp, StandardCopyOption.REPLACE_EXISTING);
                 }
             }
         }
@@ -393,13 +487,65 @@ public class IndexService {
         return new IndexResponse(task.getId());
     }
 
+    public IndexResponse resume(Integer taskId) throws IOException {
+        IndexCheckpoint checkpoint = findCheckpoint(taskId);
+        if (checkpoint == null) {
+            throw new BadRequestException("没有找到任务进度");
+        }
+        cn.har01d.alist_tvbox.entity.Site site = siteService.getById(checkpoint.getRequest().getSiteId());
+        Task task = taskService.resumeTask(taskId);
+
+        executor.submit(() -> {
+            try {
+                index(checkpoint.getRequest(), site, task, checkpoint);
+            } catch (Exception e) {
+                log.warn("index failed", e);
+                taskService.failTask(task.getId(), e.getMessage());
+            }
+        });
+
+        return new IndexResponse(task.getId());
+    }
+
+    private IndexCheckpoint findCheckpoint(Integer taskId) throws IOException {
+        Path base = Paths.get("/data/index");
+        if (!Files.exists(base)) {
+            return null;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(base, 2)) {
+            files = stream.filter(e -> e.toString().endsWith(".ckpt")).toList();
+        }
+        for (Path path : files) {
+            try {
+                IndexCheckpoint checkpoint = objectMapper.readValue(path.toFile(), IndexCheckpoint.class);
+                if (taskId.equals(checkpoint.getTaskId())) {
+                    return checkpoint;
+                }
+            } catch (Exception e) {
+                log.warn("read checkpoint failed: {}", path, e);
+            }
+        }
+        return null;
+    }
+
     @Async
     public void index(IndexRequest indexRequest, cn.har01d.alist_tvbox.entity.Site site, Task task) throws IOException {
+        index(indexRequest, site, task, null);
+    }
+
+    private void index(IndexRequest indexRequest, cn.har01d.alist_tvbox.entity.Site site, Task task, IndexCheckpoint checkpoint) throws IOException {
         StopWatch stopWatch = new StopWatch("index");
         File dir = new File("/data/index/" + indexRequest.getSiteId());
         Files.createDirectories(dir.toPath());
         File file = new File(dir, indexRequest.getIndexName() + ".txt");
+        // the search index maps the index file, so the run writes to a work file and swaps it in
+        File part = new File(dir, indexRequest.getIndexName() + ".txt.part");
         File info = new File(dir, indexRequest.getIndexName() + ".info");
+        File manifestFile = new File(dir, indexRequest.getIndexName() + ".manifest");
+        File checkpointFile = new File(dir, indexRequest.getIndexName() + ".ckpt");
+        File journalFile = new File(dir, indexRequest.getIndexName() + ".ckpt.log");
+        boolean resume = checkpoint != null;
 
         indexRequest.setPaths(indexRequest.getPaths().stream().filter(e -> !e.isBlank()).toList());
         List<String> paths = indexRequest.getPaths().stream().map(e -> e.split(":")[0]).collect(Collectors.toList());
@@ -407,47 +553,111 @@ public class IndexService {
         List<String> reset = paths.stream().filter(e -> e.startsWith(">")).map(e -> e.substring(1)).toList();
         paths.removeIf(e -> excludes.contains("-" + e));
         paths.removeIf(e -> reset.contains(">" + e));
-        if (indexRequest.isIncremental()) {
-            removeLines(file, paths, reset);
+        IndexManifest manifest = IndexManifest.empty();
+        Map<String, IndexManifest.Entry> folders = new HashMap<>();
+        if (resume) {
+            if (!part.exists() && file.exists()) {
+                Files.copy(file.toPath(), part.toPath());
+            }
+            truncate(part, checkpoint.getLength());
+            truncate(journalFile, checkpoint.getJournal());
+        } else {
+            checkpoint = new IndexCheckpoint();
+            checkpoint.setTaskId(task.getId());
+            checkpoint.setRequest(indexRequest);
+            Files.deleteIfExists(checkpointFile.toPath());
+            Files.deleteIfExists(part.toPath());
+            Files.deleteIfExists(journalFile.toPath());
+            if (indexRequest.isIncremental()) {
+                manifest = loadManifest(manifestFile, file);
+                List<String> prefixes = new ArrayList<>(paths);
+                prefixes.addAll(reset);
+                folders.putAll(manifest.getFoldersExcept(prefixes));
+                removeLines(file, part, paths, reset);
+            }
+            checkpoint.setStart(part.length());
         }
+        // the manifest only describes the index file once this run has finished writing it
+        Files.deleteIfExists(manifestFile.toPath());
 
         String summary;
-        try (FileWriter writer = new FileWriter(file, indexRequest.isIncremental());
-             FileWriter writer2 = new FileWriter(info)) {
+        boolean cancelled;
+        taskService.startTask(task.getId());
+        String detail = getTaskDetails(paths) + "\n\n索引文件:\n" + file.getAbsolutePath();
+        taskService.updateTaskData(task.getId(), detail);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(part, resume || indexRequest.isIncremental()), 64 * 1024);
+             FileWriter writer2 = new FileWriter(info);
+             BufferedWriter journal = new BufferedWriter(new FileWriter(journalFile, resume));
+             TaskProgress progress = new TaskProgress(taskService, scheduler, task.getId(), writer, Duration.ofMillis(appProperties.getTaskUpdateInterval()))) {
             Instant time = Instant.now();
-            taskService.startTask(task.getId());
-            String detail = getTaskDetails(paths) + "\n\n索引文件:\n" + file.getAbsolutePath();
-            taskService.updateTaskData(task.getId(), detail);
             IndexContext context = new IndexContext(indexRequest, site, writer, task.getId());
+            context.setProgress(progress);
+            context.setLimiter(getLimiter(site.getId(), indexRequest.getSleep()));
+            context.setManifest(manifest);
+            context.setCheckpoint(checkpoint);
+            if (resume) {
+                log.info("resume index {} from {}", checkpointFile, checkpoint.getRoot());
+                restore(context, part, journalFile);
+                context.setResumed(Set.copyOf(checkpoint.getDone()));
+                context.stats = checkpoint.getStats();
+            }
+            context.setJournal(journal);
+            context.putFolders(folders);
             context.getExcludes().addAll(excludes);
-            context.getExcludes().addAll(loadExcluded(file));
-            int total = 0;
-            for (String path : indexRequest.getPaths()) {
+            context.getExcludes().addAll(loadExcluded(part));
+            int total = context.stats.indexed;
+            List<String> roots = indexRequest.getPaths();
+            int first = checkpoint.getRoot();
+            for (int i = first; i < roots.size(); i++) {
+                String path = roots.get(i);
                 if (isCancelled(context)) {
                     break;
                 }
                 if (path.startsWith(">") || path.startsWith("-")) {
                     continue;
                 }
-                context.getTime().clear();
+                // the update times of a resumed path are restored from the journal
+                if (!resume || i != first) {
+                    context.clearTime();
+                }
                 path = customize(context, indexRequest, path);
                 stopWatch.start("index " + path);
                 var shareInfo = aListService.getShareInfo(site, path);
-                if (shareInfo != null) {
-                    index(context, shareInfo, shareInfo.getFileId(), path, 0);
-                } else {
-                    index(context, path, 0);
-                }
+                crawl(context, shareInfo, path);
                 handleUpdateTime(path, context.getTime());
                 stopWatch.stop();
                 log.info("{} {}", path, context.stats.indexed - total);
                 total = context.stats.indexed;
+                if (!isCancelled(context)) {
+                    checkpoint.setRoot(i + 1);
+                    checkpoint.getDone().clear();
+                    context.setResumed(Set.of());
+                }
             }
             writer2.write(time.toString());
+            IndexManifest.save(manifestFile, context.getFolders());
+            cancelled = isCancelled(context);
+            if (cancelled) {
+                saveCheckpoint(context);
+            } else {
+                Files.deleteIfExists(checkpointFile.toPath());
+                Files.deleteIfExists(journalFile.toPath());
+            }
             log.info("index stats: {}", context.stats);
             summary = context.stats.toString();
         }
 
+        if (cancelled) {
+            // keep the work file for resume, the partial result is still searchable
+            Path temp = Files.createTempFile(dir.toPath(), indexRequest.getIndexName(), ".tmp");
+            Files.copy(part.toPath(), temp, StandardCopyOption.REPLACE_EXISTING);
+            indexSearchService.swap(temp, file.toPath());
+        } else {
+            indexSearchService.swap(part.toPath(), file.toPath());
+        }
+        searchCacheService.invalidate("index file " + file);
+        aListService.invalidate(site.getId(), "index file " + file);
+
         if (indexRequest.isCompress()) {
             File zipFIle = new File(dir, indexRequest.getIndexName() + ".zip");
             zipFile(file, info, zipFIle);
@@ -466,7 +676,7 @@ public class IndexService {
     private void handleUpdateTime(String path, Map<String, String> times) {
         log.debug("handle update time for {}", path);
         try {
-            var list = metaRepository.findByPathStartsWith(path, PageRequest.of(0, 1000)).getContent();
+            var list = metaRepository.findAll(MetaSpecifications.byFilter(MetaFilter.of(path, "", "")), PageRequest.of(0, 1000)).getContent();
             List<Meta> updated = new ArrayList<>();
             for (var meta : list) {
                 String text = times.get(meta.getPath());
@@ -513,20 +723,96 @@ public class IndexService {
         return task.getStatus() == TaskStatus.COMPLETED && task.getResult() == TaskResult.CANCELLED;
     }
 
-    private void removeLines(File file, List<String> prefix, List<String> reset) {
+    private TokenBucket getLimiter(Integer siteId, int interval) {
+        return limiters.compute(siteId, (id, limiter) -> {
+            TokenBucket bucket = TokenBucket.ofInterval(interval);
+            return limiter != null && limiter.getRate() == bucket.getRate() ? limiter : bucket;
+        });
+    }
+
+    private void saveCheckpoint(IndexContext context) {
+        IndexCheckpoint checkpoint = context.getCheckpoint();
+        IndexRequest request = context.getIndexRequest();
+        File dir = new File("/data/index/" + request.getSiteId());
+        File temp = new File(dir, request.getIndexName() + ".ckpt.tmp");
+        try {
+            context.getWriter().flush();
+            context.getJournal().flush();
+            checkpoint.setLength(new File(dir, request.getIndexName() + ".txt.part").length());
+            checkpoint.setJournal(new File(dir, request.getIndexName() + ".ckpt.log").length());
+            checkpoint.setStats(context.stats);
+            objectMapper.writeValue(temp, checkpoint);
+            Files.move(temp.toPath(), new File(dir, request.getIndexName() + ".ckpt").toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            context.setCheckpointTime(System.currentTimeMillis());
+            log.debug("save checkpoint: {} {}", request.getIndexName(), checkpoint.getLength());
+        } catch (IOException e) {
+            log.warn("save checkpoint failed: {}", temp, e);
+        }
+    }
+
+    // the lines written by this run are read back from the work file, the folders and update times
+    // from the journal, so a checkpoint only records their lengths instead of the whole sets
+    private void restore(IndexContext context, File part, File journalFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(part.toPath(), StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel.position(context.getCheckpoint().getStart())), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                context.getSet().add(line);
+            }
+        }
+        if (!journalFile.exists()) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(journalFile.toPath())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if ("C".equals(parts[0])) {
+                    context.getTime().clear();
+                } else if ("T".equals(parts[0]) && parts.length == 3) {
+                    context.getTime().put(parts[1], parts[2]);
+                } else if ("F".equals(parts[0]) && parts.length == 4) {
+                    context.getFolders().put(parts[1], new IndexManifest.Entry(parts[2], parts[3]));
+                }
+            }
+        }
+    }
+
+    private void truncate(File file, long length) throws IOException {
         if (!file.exists()) {
             return;
         }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+    }
 
-        prefix.addAll(reset);
+    private IndexManifest loadManifest(File manifestFile, File file) {
         try {
-            List<String> lines = Files.readAllLines(file.toPath())
-                    .stream()
-                    .filter(path -> prefix.stream().noneMatch(path::startsWith))
-                    .toList();
+            if (!manifestFile.exists() || !file.exists()) {
+                return IndexManifest.empty();
+            }
+            // the lines of unchanged folders are read from the mapped search index, not kept on the heap
+            return IndexManifest.load(manifestFile, indexSearchService.getIndex(file.toPath()));
+        } catch (Exception e) {
+            log.warn("load index manifest failed: {}", manifestFile, e);
+            return IndexManifest.empty();
+        }
+    }
 
-            try (FileWriter writer = new FileWriter(file)) {
-                IOUtils.writeLines(lines, null, writer);
+    private void removeLines(File file, File target, List<String> prefix, List<String> reset) {
+        if (!file.exists()) {
+            return;
+        }
+
+        prefix.addAll(reset);
+        try (Stream<String> lines = Files.lines(file.toPath());
+             BufferedWriter writer = Files.newBufferedWriter(target.toPath())) {
+            for (String path : (Iterable<String>) lines::iterator) {
+                if (prefix.stream().noneMatch(path::startsWith)) {
+                    writer.write(path);
+                    writer.write('\n');
+                }
             }
         } catch (Exception e) {
             log.warn("", e);
@@ -606,9 +892,147 @@ public class IndexService {
         return null;
     }
 
-    private void index(IndexContext context, ShareInfo shareInfo, String parentId, String path, int depth) throws IOException {
+    private void crawl(IndexContext context, ShareInfo shareInfo, String path) throws IOException {
+        int concurrency = Math.max(1, context.getIndexRequest().getConcurrency());
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>());
+        try {
+            CrawlNode root = new CrawlNode(path, shareInfo == null ? null : shareInfo.getFileId(), null, 0, new int[0]);
+            submit(pool, context, shareInfo, root);
+            drain(context, root);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void submit(ThreadPoolExecutor pool, IndexContext context, ShareInfo shareInfo, CrawlNode node) {
+        if (context.getResumed().contains(node.path)) {
+            node.resumed = true;
+            node.done.complete(null);
+            return;
+        }
+
+        if (node.depth > 0 && context.getManifest().isUnchanged(node.path, getManifestEntry(context, node)) && reuse(context, node)) {
+            node.done.complete(null);
+            return;
+        }
+
+        try {
+            pool.execute(new CrawlTask(node, () -> {
+                try {
+                    if (shareInfo != null) {
+                        visit(context, shareInfo, node);
+                    } else {
+                        visit(context, node);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    node.errors++;
+                } catch (Exception e) {
+                    node.errors++;
+                    log.warn("index failed: {}", node.path, e);
+                } finally {
+                    for (CrawlNode child : node.children) {
+                        submit(pool, context, shareInfo, child);
+                    }
+                    node.done.complete(null);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            node.done.complete(null);
+        }
+    }
+
+    // the folder has not changed since the last run, so its lines are taken from the search index of the current index file
+    private boolean reuse(IndexContext context, CrawlNode node) {
+        log.debug("unchanged folder {}", node.path);
+        List<String> lines;
+        try {
+            lines = context.getManifest().getLines(node.path);
+        } catch (IOException e) {
+            log.warn("read unchanged folder {} failed", node.path, e);
+            return false;
+        }
+        node.reused = true;
+        for (String line : lines) {
+            if (!exclude(context.getExcludes(), line)) {
+                node.lines.add(line);
+            }
+        }
+        node.folders.putAll(context.getManifest().getFolders(node.path));
+        return true;
+    }
+
+    private IndexManifest.Entry getManifestEntry(IndexContext context, CrawlNode node) {
+        int depth = context.getMaxDepth() > 0 ? context.getMaxDepth() - node.depth : 0;
+        String settings = depth + (context.isIncludeFiles() ? ":file" : "") + (context.isExcludeExternal() ? ":external" : "");
+        return new IndexManifest.Entry(node.modified, settings);
+    }
+
+    // workers only fill the nodes, the context is written here in the same order as a depth-first walk
+    private void drain(IndexContext context, CrawlNode node) throws IOException {
+        node.done.join();
+        // a resumed folder was finished before the restart, its lines and manifest entries are already there
+        boolean complete = node.resumed ? context.getFolders().containsKey(node.path) : node.reused || (node.visited && !node.failed && node.errors == 0);
+        boolean finished = node.resumed || node.reused || node.visited;
+        List<String> children = new ArrayList<>(node.children.size());
+        for (int i = 0; i < node.children.size(); i++) {
+            CrawlNode child = node.children.get(i);
+            drain(context, child);
+            complete = complete && child.complete;
+            finished = finished && child.finished;
+            children.add(child.path);
+            // the subtree is written, only the pending part of the tree stays in memory
+            node.children.set(i, null);
+        }
+        node.complete = complete;
+        node.finished = finished;
+
+        // only folders whose whole subtree was indexed can be skipped next time
+        context.putFolders(node.folders);
+        if (complete && StringUtils.isNotEmpty(node.modified)) {
+            context.putFolder(node.path, getManifestEntry(context, node));
+        }
+        if (node.reused) {
+            context.stats.skipped++;
+        }
+
+        context.putTimes(node.time);
+        context.stats.files += node.files;
+        context.stats.errors += node.errors;
+        context.stats.excluded += node.excluded;
+        if (node.failed) {
+            context.getProgress().addFailedPath(node.path);
+        }
+        for (String line : node.lines) {
+            context.write(line);
+        }
+        node.lines.clear();
+        node.time.clear();
+        node.folders.clear();
+        if (node.visited) {
+            context.getProgress().updateSummary(context.stats.toString());
+        }
+
+        // keep only the topmost finished folders, the rest of the frontier is listed again on resume
+        if (finished) {
+            Set<String> done = context.getCheckpoint().getDone();
+            children.forEach(done::remove);
+            done.add(node.path);
+        }
+        if (System.currentTimeMillis() - context.getCheckpointTime() > CHECKPOINT_INTERVAL) {
+            saveCheckpoint(context);
+        }
+    }
+
+    private boolean isLeaf(IndexContext context, int depth) {
+        return context.getMaxDepth() > 0 && depth == context.getMaxDepth();
+    }
+
+    private void visit(IndexContext context, ShareInfo shareInfo, CrawlNode node) throws InterruptedException {
+        String path = node.path;
+        int depth = node.depth;
         log.debug("path: {}  depth: {}  context: {}", path, depth, context);
-        if ((context.getMaxDepth() > 0 && depth == context.getMaxDepth()) || isCancelled(context)) {
+        if (isLeaf(context, depth) || isCancelled(context)) {
             log.debug("exit {}", depth);
             return;
         }
@@ -617,22 +1041,18 @@ public class IndexService {
             log.info("index {} : {}", context.getSiteName(), path);
         }
 
+        node.visited = true;
         List<String> files = new ArrayList<>();
         List<String> folders = new ArrayList<>();
         boolean hasFile = false;
         String marker = "";
         do {
-            var fsResponse = listFiles(context, shareInfo, parentId, path, marker);
+            shareLimiters.computeIfAbsent(context.getSite().getId(), id -> TokenBucket.ofInterval(1000)).acquire();
+            var fsResponse = listFiles(context, shareInfo, node.fileId, path, marker);
             if (fsResponse == null) {
                 log.warn("response null: {} {}", path, context.stats);
-                context.stats.errors++;
-                Task task = taskService.getById(context.getTaskId());
-                String data = task.getData();
-                if (!data.contains("失效路径：")) {
-                    data += "\n\n失效路径：\n";
-                }
-                data += path + "\n";
-                taskService.updateTaskData(task.getId(), data);
+                node.errors++;
+                node.failed = true;
                 return;
             }
 
@@ -643,11 +1063,11 @@ public class IndexService {
                         log.debug("new path: {}", newPath);
                         if (exclude(context.getExcludes(), newPath)) {
                             log.warn("exclude folder {}", newPath);
-                            context.stats.excluded++;
+                            node.excluded++;
                             continue;
                         }
 
-                        context.getTime().put(newPath, fsInfo.getUpdatedAt());
+                        node.time.put(newPath, fsInfo.getUpdatedAt());
                         if (context.getMaxDepth() == depth + 1 && !context.isIncludeFiles()) {
                             folders.add(fsInfo.getName());
                         } else {
@@ -656,21 +1076,8 @@ public class IndexService {
                                 continue;
                             }
 
-//                            if (context.getIndexRequest().getSleep() > 0) {
-//                                log.debug("sleep {}", context.getIndexRequest().getSleep());
-//                                Thread.sleep(context.getIndexRequest().getSleep());
-//                            }
-                            Thread.sleep(1000);
-
-                            if (isCancelled(context)) {
-                                break;
-                            }
-
-                            try {
-                                index(context, shareInfo, fsInfo.getFileId(), newPath, depth + 1);
-                            } catch (Exception e) {
-                                context.stats.errors++;
-                                log.warn("index failed: {}", newPath, e);
+                            if (!isLeaf(context, depth + 1)) {
+                                node.addChild(newPath, fsInfo.getFileId(), fsInfo.getUpdatedAt());
                             }
                         }
                     } else if (isMediaFormat(fsInfo.getName())) { // file
@@ -679,14 +1086,14 @@ public class IndexService {
                             String newPath = fixPath(path + "/" + fsInfo.getName());
                             if (exclude(context.getExcludes(), newPath)) {
                                 log.warn("exclude file {}", newPath);
-                                context.stats.excluded++;
+                                node.excluded++;
                                 continue;
                             }
 
-                            context.stats.files++;
+                            node.files++;
                             log.debug("{}, add file: {}", path, fsInfo.getName());
                             files.add(fsInfo.getName());
-                            context.getTime().put(newPath, fsInfo.getUpdatedAt());
+                            node.time.put(newPath, fsInfo.getUpdatedAt());
                         }
                     } else {
                         log.debug("ignore file: {}", fsInfo.getName());
@@ -700,22 +1107,18 @@ public class IndexService {
         } while (StringUtils.isNotEmpty(marker));
 
         if (hasFile) {
-            context.write(path);
+            node.lines.add(path);
         }
 
         for (String name : folders) {
-            String newPath = fixPath(path + "/" + name);
-            context.write(newPath);
+            node.lines.add(fixPath(path + "/" + name));
         }
 
         if (!shouldSkipFiles(files)) {
             for (String name : files) {
-                String newPath = fixPath(path + "/" + name);
-                context.write(newPath);
+                node.lines.add(fixPath(path + "/" + name));
             }
         }
-
-        taskService.updateTaskSummary(context.getTaskId(), context.stats.toString());
     }
 
     private boolean shouldSkipFiles(List<String> files) {
@@ -735,9 +1138,11 @@ public class IndexService {
         return count >= threshold;
     }
 
-    private void index(IndexContext context, String path, int depth) throws IOException {
+    private void visit(IndexContext context, CrawlNode node) throws InterruptedException {
+        String path = node.path;
+        int depth = node.depth;
         log.debug("path: {}  depth: {}  context: {}", path, depth, context);
-        if ((context.getMaxDepth() > 0 && depth == context.getMaxDepth()) || isCancelled(context)) {
+        if (isLeaf(context, depth) || isCancelled(context)) {
             log.debug("exit {}", depth);
             return;
         }
@@ -746,19 +1151,12 @@ public class IndexService {
             log.info("index {} : {}", context.getSiteName(), path);
         }
 
-        FsResponse fsResponse = aListService.listFiles(context.getSite(), path, 1, 5000);
+        context.getLimiter().acquire();
+        FsResponse fsResponse = aListService.listFiles(context.getSite(), path, 1, 5000, false);
         if (fsResponse == null) {
             log.warn("response null: {} {}", path, context.stats);
-            context.stats.errors++;
-            if (depth == 0) {
-                Task task = taskService.getById(context.getTaskId());
-                String data = task.getData();
-                if (!data.contains("失效路径：")) {
-                    data += "\n\n失效路径：\n";
-                }
-                data += path + "\n";
-                taskService.updateTaskData(task.getId(), data);
-            }
+            node.errors++;
+            node.failed = depth == 0;
             return;
         }
         if (context.isExcludeExternal() && fsResponse.getProvider().contains("AList")) {
@@ -766,6 +1164,8 @@ public class IndexService {
             return;
         }
 
+        node.visited = true;
+
         log.debug("{} get {} files", fsResponse.getProvider(), fsResponse.getFiles().size());
         List<String> files = new ArrayList<>();
         boolean hasFile = false;
@@ -776,11 +1176,11 @@ public class IndexService {
                     log.debug("new path: {}", newPath);
                     if (exclude(context.getExcludes(), newPath)) {
                         log.warn("exclude folder {}", newPath);
-                        context.stats.excluded++;
+                        node.excluded++;
                         continue;
                     }
 
-                    context.getTime().put(newPath, fsInfo.getModified());
+                    node.time.put(newPath, fsInfo.getModified());
                     if (context.getMaxDepth() == depth + 1 && !context.isIncludeFiles()) {
                         files.add(fsInfo.getName());
                     } else {
@@ -789,20 +1189,8 @@ public class IndexService {
                             continue;
                         }
 
-                        if (context.getIndexRequest().getSleep() > 0) {
-                            log.debug("sleep {}", context.getIndexRequest().getSleep());
-                            Thread.sleep(context.getIndexRequest().getSleep());
-                        }
-
-                        if (isCancelled(context)) {
-                            break;
-                        }
-
-                        try {
-                            index(context, newPath, depth + 1);
-                        } catch (Exception e) {
-                            context.stats.errors++;
-                            log.warn("index failed: {}", newPath, e);
+                        if (!isLeaf(context, depth + 1)) {
+                            node.addChild(newPath, null, fsInfo.getModified());
                         }
                     }
                 } else if (isMediaFormat(fsInfo.getName())) { // file
@@ -811,14 +1199,14 @@ public class IndexService {
                         String newPath = fixPath(path + "/" + fsInfo.getName());
                         if (exclude(context.getExcludes(), newPath)) {
                             log.warn("exclude file {}", newPath);
-                            context.stats.excluded++;
+                            node.excluded++;
                             continue;
                         }
 
-                        context.stats.files++;
+                        node.files++;
                         log.debug("{}, add file: {}", path, fsInfo.getName());
                         files.add(fsInfo.getName());
-                        context.getTime().put(newPath, fsInfo.getModified());
+                        node.time.put(newPath, fsInfo.getModified());
                     }
                 } else {
                     log.debug("ignore file: {}", fsInfo.getName());
@@ -829,15 +1217,12 @@ public class IndexService {
         }
 
         if (hasFile) {
-            context.write(path);
+            node.lines.add(path);
         }
 
         for (String name : files) {
-            String newPath = fixPath(path + "/" + name);
-            context.write(newPath);
+            node.lines.add(fixPath(path + "/" + name));
         }
-
-        taskService.updateTaskSummary(context.getTaskId(), context.stats.toString());
     }
 
     private boolean isMovie(String path) {
@@ -965,4 +1350,53 @@ public class IndexService {
             return url;
         }
     }
+
+    private static class CrawlNode {
+        private final String path;
+        private final String fileId;
+        private final String modified;
+        private final int depth;
+        private final int[] order;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final List<CrawlNode> children = new ArrayList<>();
+        private final List<String> lines = new ArrayList<>();
+        private final Map<String, String> time = new HashMap<>();
+        private final Map<String, IndexManifest.Entry> folders = new HashMap<>();
+        private boolean visited;
+        private boolean reused;
+        private boolean resumed;
+        private boolean complete;
+        private boolean finished;
+        private boolean failed;
+        private int files;
+        private int errors;
+        private int excluded;
+
+        private CrawlNode(String path, String fileId, String modified, int depth, int[] order) {
+            this.path = path;
+            this.fileId = fileId;
+            this.modified = modified;
+            this.depth = depth;
+            this.order = order;
+        }
+
+        private void addChild(String path, String fileId, String modified) {
+            int[] childOrder = Arrays.copyOf(order, order.length + 1);
+            childOrder[order.length] = children.size();
+            children.add(new CrawlNode(path, fileId, modified, depth + 1, childOrder));
+        }
+    }
+
+    // pending folders are taken in depth-first order, so the writer is never far behind the workers
+    private record CrawlTask(CrawlNode node, Runnable runnable) implements Runnable, Comparable<CrawlTask> {
+        @Override
+        public void run() {
+            runnable.run();
+        }
+
+        @Override
+        public int compareTo(CrawlTask other) {
+            return Arrays.compare(node.order, other.node.order);
+        }
+    }
 }
@@ -0,0 +1,147 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.entity.Meta;
+import cn.har01d.alist_tvbox.entity.MetaRepository;
+import cn.har01d.alist_tvbox.entity.TmdbMeta;
+import cn.har01d.alist_tvbox.entity.TmdbMetaRepository;
+import cn.har01d.alist_tvbox.util.PathGramIndex;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// the paths of meta and tmdb_meta in memory, so a search by a part of the path reads only the matching rows.
+// a text of one char, or one that matches too many rows to be worth an id list, still runs the LIKE query
+@Slf4j
+@Service
+public class MetaSearchService {
+    private static final int MAX_IDS = 1000;
+
+    private final MetaRepository metaRepository;
+    private final TmdbMetaRepository tmdbMetaRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final List<Consumer<Indexes>> pending = new ArrayList<>();
+    private volatile Indexes indexes;
+    private boolean loading;
+
+    public MetaSearchService(MetaRepository metaRepository, TmdbMetaRepository tmdbMetaRepository, JdbcTemplate jdbcTemplate) {
+        this.metaRepository = metaRepository;
+        this.tmdbMetaRepository = tmdbMetaRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void setup() {
+        reload();
+    }
+
+    // the tables were changed without going through JPA
+    public void reload() {
+        executor.execute(this::load);
+    }
+
+    public Page<Meta> findMetas(String text, Pageable pageable) {
+        Indexes current = indexes;
+        int[] ids = current == null ? null : find(current.metas, text);
+        if (ids == null) {
+            return metaRepository.findByPathContains(text, pageable);
+        }
+        // the path is checked again, the index may have a change of a transaction that was rolled back
+        return metaRepository.findByIdInAndPathContains(toList(ids), text, pageable);
+    }
+
+    public Page<TmdbMeta> findTmdbMetas(String text, Pageable pageable) {
+        Indexes current = indexes;
+        int[] ids = current == null ? null : find(current.tmdbMetas, text);
+        if (ids == null) {
+            return tmdbMetaRepository.findByPathContains(text, pageable);
+        }
+        return tmdbMetaRepository.findByIdInAndPathContains(toList(ids), text, pageable);
+    }
+
+    public void update(Object entity) {
+        if (entity instanceof Meta meta) {
+            apply(e -> e.metas.put(meta.getId(), meta.getPath()));
+        } else if (entity instanceof TmdbMeta meta) {
+            apply(e -> e.tmdbMetas.put(meta.getId(), meta.getPath()));
+        }
+    }
+
+    public void remove(Object entity) {
+        if (entity instanceof Meta meta) {
+            apply(e -> e.metas.remove(meta.getId()));
+        } else if (entity instanceof TmdbMeta meta) {
+            apply(e -> e.tmdbMetas.remove(meta.getId()));
+        }
+    }
+
+    private static int[] find(PathGramIndex index, String text) {
+        if (text.length() < 2) {
+            return null;
+        }
+        int[] ids = index.find(text);
+        return ids.length > MAX_IDS ? null : ids;
+    }
+
+    private static List<Integer> toList(int[] ids) {
+        // an empty IN list is not valid SQL for every database, no row has the id 0
+        return ids.length == 0 ? List.of(0) : Arrays.stream(ids).boxed().toList();
+    }
+
+    private synchronized void apply(Consumer<Indexes> change) {
+        if (indexes != null) {
+            change.accept(indexes);
+        }
+        // replayed on the new indexes, the queries may have missed it
+        if (loading) {
+            pending.add(change);
+        }
+    }
+
+    private void load() {
+        synchronized (this) {
+            loading = true;
+            pending.clear();
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            Indexes result = new Indexes();
+            jdbcTemplate.query("SELECT ID, PATH FROM META", rs -> {
+                result.metas.put(rs.getInt(1), rs.getString(2));
+            });
+            jdbcTemplate.query("SELECT ID, PATH FROM TMDB_META", rs -> {
+                result.tmdbMetas.put(rs.getInt(1), rs.getString(2));
+            });
+
+            synchronized (this) {
+                pending.forEach(e -> e.accept(result));
+                indexes = result;
+            }
+            log.info("load meta paths: {} meta, {} tmdb meta in {}ms",
+                    result.metas.size(), result.tmdbMetas.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("load meta paths failed", e);
+        } finally {
+            synchronized (this) {
+                loading = false;
+                pending.clear();
+            }
+        }
+    }
+
+    private static class Indexes {
+        private final PathGramIndex metas = new PathGramIndex();
+        private final PathGramIndex tmdbMetas = new PathGramIndex();
+    }
+}
@@ -13,6 +13,7 @@ import cn.har01d.alist_tvbox.util.Constants;
 import cn.har01d.alist_tvbox.util.Utils;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.AsyncContext;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
@@ -23,22 +24,29 @@ import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.CancellationException;
-
-import static com.github.kiulian.downloader.model.Utils.closeSilently;
 
 @Slf4j
 @Service
 public class ProxyService {
-    private static final int BUFFER_SIZE = 64 * 1024;
+    // set by the http client itself
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+    // the async context never times out, a stalled upstream fails here before the response starts
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofSeconds(60);
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
     private final Cache<String, String> cache = Caffeine.newBuilder()
             .maximumSize(50)
             .build();
@@ -125,7 +133,7 @@ public class ProxyService {
         }
 
         log.trace("headers: {}", headers);
-        downloadStraight(url, response, headers);
+        downloadStraight(url, request, response, headers);
     }
 
     private void updateShareTime(String path) {
@@ -167,36 +175,25 @@ public class ProxyService {
         return path.replaceAll("/+", "/");
     }
 
-    public void downloadStraight(String url, HttpServletResponse response, Map<String, String> headers) throws IOException {
-        HttpURLConnection urlConnection = openConnection(url, headers);
-        response.setStatus(urlConnection.getResponseCode());
-        urlConnection.getHeaderFields().forEach((key, value) -> response.setHeader(key, value.get(0)));
-        copyAndCloseInput(urlConnection.getInputStream(), response.getOutputStream());
-    }
-
-    private static void copyAndCloseInput(InputStream is, OutputStream os) throws IOException {
-        byte[] buffer = new byte[BUFFER_SIZE];
-        try {
-            int count;
-            while ((count = is.read(buffer)) != -1) {
-                if (Thread.interrupted()) {
-                    throw new CancellationException();
-                }
-                os.write(buffer, 0, count);
+    // streams on servlet async io, no thread is held while the client or upstream is waiting
+    public void downloadStraight(String url, HttpServletRequest request, HttpServletResponse response, Map<String, String> headers) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).timeout(RESPONSE_TIMEOUT).GET();
+        headers.forEach((key, value) -> {
+            if (!RESTRICTED_HEADERS.contains(key.toLowerCase())) {
+                builder.header(key, value);
             }
-        } finally {
-            closeSilently(is);
-        }
-    }
-
-    private HttpURLConnection openConnection(String httpUrl, Map<String, String> headers) throws IOException {
-        URL url = new URL(httpUrl);
-        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-        if (headers != null) {
-            for (Map.Entry<String, String> entry : headers.entrySet()) {
-                urlConnection.setRequestProperty(entry.getKey(), entry.getValue());
-            }
-        }
-        return urlConnection;
+        });
+
+        AsyncContext context = request.startAsync();
+        context.setTimeout(0);
+        ProxyStream stream = new ProxyStream(url, context);
+        httpClient.sendAsync(builder.build(), info -> {
+            stream.start(info);
+            return HttpResponse.BodySubscribers.fromSubscriber(stream);
+        }).exceptionally(e -> {
+            log.warn("proxy {} failed: {}", url, e.getMessage());
+            stream.fail();
+            return null;
+        });
     }
 }
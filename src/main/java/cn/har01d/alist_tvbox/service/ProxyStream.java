@@ -0,0 +1,169 @@
+package cn.har01d.alist_tvbox.service;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Flow;
+
+// writes the body of an upstream response to an async servlet response without blocking a thread,
+// the next buffers are only requested from upstream when the client has taken the previous ones
+@Slf4j
+class ProxyStream implements Flow.Subscriber<List<ByteBuffer>>, WriteListener, AsyncListener {
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // describe the upstream connection, not the proxied response
+    private static final Set<String> HOP_HEADERS = Set.of("connection", "keep-alive", "transfer-encoding");
+
+    private final String url;
+    private final AsyncContext context;
+    private final ServletOutputStream output;
+    private final Queue<ByteBuffer> buffers = new ArrayDeque<>();
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private Flow.Subscription subscription;
+    private boolean requested;
+    private boolean complete;
+    private boolean closed;
+
+    ProxyStream(String url, AsyncContext context) throws IOException {
+        this.url = url;
+        this.context = context;
+        this.output = context.getResponse().getOutputStream();
+        context.addListener(this);
+        output.setWriteListener(this);
+    }
+
+    // the client may be gone already, its response must not be touched after the context completed
+    synchronized void start(HttpResponse.ResponseInfo info) {
+        if (closed) {
+            return;
+        }
+        HttpServletResponse response = (HttpServletResponse) context.getResponse();
+        response.setStatus(info.statusCode());
+        info.headers().map().forEach((key, value) -> {
+            if (!key.startsWith(":") && !HOP_HEADERS.contains(key.toLowerCase())) {
+                response.setHeader(key, value.get(0));
+            }
+        });
+    }
+
+    synchronized void fail() {
+        if (closed) {
+            return;
+        }
+        HttpServletResponse response = (HttpServletResponse) context.getResponse();
+        if (!response.isCommitted()) {
+            response.setStatus(HttpServletResponse.SC_BAD_GATEWAY);
+        }
+        close();
+    }
+
+    @Override
+    public synchronized void onSubscribe(Flow.Subscription subscription) {
+        if (closed) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        drain();
+    }
+
+    @Override
+    public synchronized void onNext(List<ByteBuffer> items) {
+        requested = false;
+        buffers.addAll(items);
+        drain();
+    }
+
+    @Override
+    public synchronized void onError(Throwable throwable) {
+        log.warn("proxy {} failed: {}", url, throwable.getMessage());
+        close();
+    }
+
+    @Override
+    public synchronized void onComplete() {
+        complete = true;
+        drain();
+    }
+
+    @Override
+    public synchronized void onWritePossible() {
+        drain();
+    }
+
+    @Override
+    public synchronized void onError(AsyncEvent event) {
+        log.debug("proxy {} closed by client: {}", url, event.getThrowable() == null ? "" : event.getThrowable().getMessage());
+        close();
+    }
+
+    @Override
+    public synchronized void onTimeout(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    // the client stopped reading, or upstream failed before the response started
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        buffers.clear();
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        context.complete();
+    }
+
+    private void drain() {
+        try {
+            while (!closed && output.isReady()) {
+                ByteBuffer buffer = buffers.peek();
+                if (buffer == null) {
+                    if (complete) {
+                        closed = true;
+                        context.complete();
+                    } else if (subscription != null && !requested) {
+                        requested = true;
+                        subscription.request(1);
+                    }
+                    return;
+                }
+                if (buffer.hasArray()) {
+                    output.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                    buffer.position(buffer.limit());
+                } else {
+                    // read only buffers of the http client can not be written directly
+                    int length = Math.min(buffer.remaining(), chunk.length);
+                    buffer.get(chunk, 0, length);
+                    output.write(chunk, 0, length);
+                }
+                if (!buffer.hasRemaining()) {
+                    buffers.poll();
+                }
+            }
+        } catch (IOException e) {
+            log.debug("proxy {} write failed: {}", url, e.getMessage());
+            close();
+        }
+    }
+}
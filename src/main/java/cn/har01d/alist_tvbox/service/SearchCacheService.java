@@ -0,0 +1,68 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.dto.CacheStats;
+import cn.har01d.alist_tvbox.tvbox.MovieList;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+@Slf4j
+@Service
+public class SearchCacheService {
+    private static final Duration COALESCE_DELAY = Duration.ofSeconds(10);
+
+    private final Cache<Key, MovieList> cache = Caffeine.newBuilder()
+            .maximumSize(500)
+            .expireAfterWrite(Duration.ofMinutes(30))
+            .recordStats()
+            .build();
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final TaskScheduler scheduler;
+
+    public SearchCacheService(TaskScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    // concurrent searches for the same key wait for one load, a load that started before an invalidation
+    // is stored under the old generation and never read again
+    public MovieList get(String baseUrl, Integer type, String ac, String keyword, int page, long sites, Supplier<MovieList> loader) {
+        Key key = new Key(baseUrl, type, ac, keyword, page, sites, generation.get());
+        return cache.get(key, k -> loader.get());
+    }
+
+    public void invalidate(String reason) {
+        generation.incrementAndGet();
+        if (cache.estimatedSize() > 0) {
+            log.debug("invalidate search cache: {}", reason);
+        }
+        cache.invalidateAll();
+    }
+
+    // a scrape saves meta one by one, the changes within the delay clear the cache once
+    public void invalidateLater(String reason) {
+        if (pending.compareAndSet(false, true)) {
+            scheduler.schedule(() -> {
+                pending.set(false);
+                invalidate(reason);
+            }, Instant.now().plus(COALESCE_DELAY));
+        }
+    }
+
+    public CacheStats getStats() {
+        var stats = cache.stats();
+        return new CacheStats(cache.estimatedSize(), stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount());
+    }
+
+    private record Key(String baseUrl, Integer type, String ac, String keyword, int page, long sites, long generation) {
+    }
+}
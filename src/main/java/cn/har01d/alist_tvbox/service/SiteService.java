@@ -34,6 +34,7 @@ import java.nio.file.Paths;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @Service
@@ -43,6 +44,7 @@ public class SiteService {
     private final SettingRepository settingRepository;
     private final JdbcTemplate jdbcTemplate;
     private final RestTemplate restTemplate;
+    private final AtomicLong generation = new AtomicLong();
     private String aListToken = "";
 
     public SiteService(AppProperties appProperties,
@@ -216,6 +218,15 @@ public class SiteService {
         return siteRepository.findAllByDisabledFalse(sort);
     }
 
+    // bumped by SiteListener on every change of a site, so the sites are not read to tell if they changed
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public void onChange() {
+        generation.incrementAndGet();
+    }
+
     public Site create(SiteDto dto) {
         validate(dto);
         if (dto.getUrl().endsWith("/")) {
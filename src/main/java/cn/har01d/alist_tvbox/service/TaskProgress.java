@@ -0,0 +1,89 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.entity.Task;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.io.Flushable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+// collects task updates in memory and writes them to the database at most once per interval
+@Slf4j
+public class TaskProgress implements AutoCloseable {
+    private final TaskService taskService;
+    private final Integer taskId;
+    private final Flushable output;
+    private final ScheduledFuture<?> future;
+    private final Object flushLock = new Object();
+    private final List<String> failed = new ArrayList<>();
+    private String summary;
+    private String data;
+
+    public TaskProgress(TaskService taskService, TaskScheduler scheduler, Integer taskId, Flushable output, Duration interval) {
+        this.taskService = taskService;
+        this.taskId = taskId;
+        this.output = output;
+        this.future = scheduler.scheduleWithFixedDelay(this::flush, Instant.now().plus(interval), interval);
+    }
+
+    public synchronized void updateSummary(String summary) {
+        this.summary = summary;
+    }
+
+    public synchronized void updateData(String data) {
+        this.data = data;
+    }
+
+    public synchronized void addFailedPath(String path) {
+        failed.add(path);
+    }
+
+    public void flush() {
+        synchronized (flushLock) {
+            String summary;
+            String data;
+            List<String> paths;
+            synchronized (this) {
+                summary = this.summary;
+                data = this.data;
+                paths = new ArrayList<>(failed);
+                this.summary = null;
+                this.data = null;
+                failed.clear();
+            }
+
+            try {
+                if (output != null) {
+                    output.flush();
+                }
+                if (data != null) {
+                    taskService.updateTaskData(taskId, data);
+                }
+                if (!paths.isEmpty()) {
+                    Task task = taskService.getById(taskId);
+                    String text = task.getData();
+                    if (!text.contains("失效路径：")) {
+                        text += "\n\n失效路径：\n";
+                    }
+                    text += String.join("\n", paths) + "\n";
+                    taskService.updateTaskData(taskId, text);
+                }
+                if (summary != null) {
+                    taskService.updateTaskSummary(taskId, summary);
+                }
+            } catch (Exception e) {
+                log.warn("update task {} failed", taskId, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        future.cancel(false);
+        flush();
+    }
+}
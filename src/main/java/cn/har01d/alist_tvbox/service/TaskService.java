@@ -83,6 +83,19 @@ public class TaskService {
         taskRepository.save(task);
     }
 
+    public Task resumeTask(Integer id) {
+        Task task = getById(id);
+        if (task.getType() != TaskType.INDEX || task.getStatus() != TaskStatus.COMPLETED || task.getResult() == TaskResult.OK) {
+            throw new BadRequestException("任务不能继续");
+        }
+        log.info("resume task {}: {}", id, task.getName());
+        task.setStatus(TaskStatus.READY);
+        task.setResult(null);
+        task.setError(null);
+        task.setEndTime(null);
+        return taskRepository.save(task);
+    }
+
     public void updateTaskData(Integer id, String data) {
         Task task = getById(id);
         task.setData(data);
@@ -0,0 +1,277 @@
+package cn.har01d.alist_tvbox.service;
+
+import cn.har01d.alist_tvbox.entity.Alias;
+import cn.har01d.alist_tvbox.entity.Movie;
+import cn.har01d.alist_tvbox.entity.Tmdb;
+import cn.har01d.alist_tvbox.util.TextUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// names of the movie and tmdb tables in memory, so resolving a folder name does not query the database.
+// meta and tmdb_meta rows are looked up by their indexed path in the database instead
+@Slf4j
+@Service
+public class TitleDictionaryService {
+    private final JdbcTemplate jdbcTemplate;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final List<Consumer<Dictionary>> pending = new ArrayList<>();
+    // folder names like "Season 1" or "4K" never match, remember them instead of running the lookups again
+    private final Cache<String, Boolean> missingMovies = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+    private final Cache<String, Boolean> missingTmdbs = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+    private final AtomicLong movieGeneration = new AtomicLong();
+    private final AtomicLong tmdbGeneration = new AtomicLong();
+    private volatile Dictionary dictionary;
+    private boolean loading;
+
+    public TitleDictionaryService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void setup() {
+        reload();
+    }
+
+    public boolean isReady() {
+        return dictionary != null;
+    }
+
+    // the tables were changed without going through JPA
+    public void reload() {
+        executor.execute(this::load);
+    }
+
+    public Movie getMovie(String name, Function<String, Movie> loader) {
+        return lookup(missingMovies, movieGeneration, name, loader);
+    }
+
+    public Tmdb getTmdb(String name, Function<String, Tmdb> loader) {
+        return lookup(missingTmdbs, tmdbGeneration, name, loader);
+    }
+
+    private static <T> T lookup(Cache<String, Boolean> missing, AtomicLong generation, String name, Function<String, T> loader) {
+        if (missing.getIfPresent(name) != null) {
+            return null;
+        }
+        long current = generation.get();
+        T result = loader.apply(name);
+        // a title may have been added while loading
+        if (result == null && current == generation.get()) {
+            missing.put(name, true);
+        }
+        return result;
+    }
+
+    // follows the lookups of DoubanService.getByName, 0 means an alias without a movie
+    public Integer findMovie(String name) {
+        Dictionary dict = dictionary;
+        Integer id = dict.aliases.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        name = TextUtils.fixName(name);
+        id = findMovie(dict, name);
+        if (id != null) {
+            return id;
+        }
+
+        String newName = TextUtils.updateName(name);
+        if (!newName.equals(name)) {
+            return findMovie(dict, newName);
+        }
+        return null;
+    }
+
+    private static Integer findMovie(Dictionary dict, String name) {
+        Integer id = dict.aliases.get(name);
+        if (id != null) {
+            return id;
+        }
+        return first(dict.movies.get(name));
+    }
+
+    // follows the lookups of TmdbService.getByName
+    public Integer findTmdb(String name) {
+        Dictionary dict = dictionary;
+        name = TextUtils.fixName(name);
+        Integer id = first(dict.tmdbs.get(name));
+        if (id != null) {
+            return id;
+        }
+
+        String newName = TextUtils.updateName(name);
+        if (!newName.equals(name)) {
+            return first(dict.tmdbs.get(newName));
+        }
+        return null;
+    }
+
+    public void update(Object entity) {
+        apply(dict -> dict.update(entity));
+        clearMissing(entity);
+    }
+
+    public void remove(Object entity) {
+        apply(dict -> dict.remove(entity));
+        clearMissing(entity);
+    }
+
+    private void clearMissing(Object entity) {
+        if (entity instanceof Movie || entity instanceof Alias) {
+            clearMissing(missingMovies, movieGeneration);
+        } else if (entity instanceof Tmdb) {
+            clearMissing(missingTmdbs, tmdbGeneration);
+        }
+    }
+
+    private static void clearMissing(Cache<String, Boolean> missing, AtomicLong generation) {
+        generation.incrementAndGet();
+        missing.invalidateAll();
+    }
+
+    private synchronized void apply(Consumer<Dictionary> change) {
+        if (dictionary != null) {
+            change.accept(dictionary);
+        }
+        // replayed on the new dictionary, the queries may have missed it
+        if (loading) {
+            pending.add(change);
+        }
+    }
+
+    private void load() {
+        synchronized (this) {
+            loading = true;
+            pending.clear();
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            Dictionary dict = new Dictionary();
+            jdbcTemplate.query("SELECT NAME, MOVIE_ID FROM ALIAS", rs -> {
+                dict.aliases.put(rs.getString(1), rs.getInt(2));
+            });
+            jdbcTemplate.query("SELECT ID, NAME FROM MOVIE ORDER BY ID", rs -> {
+                dict.putMovie(rs.getInt(1), rs.getString(2));
+            });
+            jdbcTemplate.query("SELECT ID, NAME FROM TMDB ORDER BY ID", rs -> {
+                dict.putTmdb(rs.getInt(1), rs.getString(2));
+            });
+
+            synchronized (this) {
+                pending.forEach(e -> e.accept(dict));
+                dictionary = dict;
+            }
+            clearMissing(missingMovies, movieGeneration);
+            clearMissing(missingTmdbs, tmdbGeneration);
+            log.info("load title dictionary: {} aliases, {} movies, {} tmdb in {}ms",
+                    dict.aliases.size(), dict.movieNames.size(), dict.tmdbNames.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("load title dictionary failed", e);
+        } finally {
+            synchronized (this) {
+                loading = false;
+                pending.clear();
+            }
+        }
+    }
+
+    private static Integer first(int[] ids) {
+        return ids == null ? null : ids[0];
+    }
+
+    private static class Dictionary {
+        private final Map<String, Integer> aliases = new ConcurrentHashMap<>();
+        // several movies can have the same name, the ids are sorted like the rows of the query
+        private final Map<String, int[]> movies = new ConcurrentHashMap<>();
+        private final Map<Integer, String> movieNames = new ConcurrentHashMap<>();
+        private final Map<String, int[]> tmdbs = new ConcurrentHashMap<>();
+        private final Map<Integer, String> tmdbNames = new ConcurrentHashMap<>();
+
+        private void update(Object entity) {
+            if (entity instanceof Alias alias) {
+                aliases.put(alias.getName(), alias.getMovie() == null ? 0 : alias.getMovie().getId());
+            } else if (entity instanceof Movie movie) {
+                removeName(movies, movieNames, movie.getId());
+                putMovie(movie.getId(), movie.getName());
+            } else if (entity instanceof Tmdb tmdb) {
+                removeName(tmdbs, tmdbNames, tmdb.getId());
+                putTmdb(tmdb.getId(), tmdb.getName());
+            }
+        }
+
+        private void remove(Object entity) {
+            if (entity instanceof Alias alias) {
+                aliases.remove(alias.getName());
+            } else if (entity instanceof Movie movie) {
+                removeName(movies, movieNames, movie.getId());
+            } else if (entity instanceof Tmdb tmdb) {
+                removeName(tmdbs, tmdbNames, tmdb.getId());
+            }
+        }
+
+        private void putMovie(int id, String name) {
+            putName(movies, movieNames, id, name);
+        }
+
+        private void putTmdb(int id, String name) {
+            putName(tmdbs, tmdbNames, id, name);
+        }
+
+        private static void putName(Map<String, int[]> map, Map<Integer, String> names, int id, String name) {
+            if (name == null) {
+                return;
+            }
+            names.put(id, name);
+            map.compute(name, (k, ids) -> {
+                if (ids == null) {
+                    return new int[]{id};
+                }
+                int index = Arrays.binarySearch(ids, id);
+                if (index >= 0) {
+                    return ids;
+                }
+                index = -index - 1;
+                int[] result = new int[ids.length + 1];
+                System.arraycopy(ids, 0, result, 0, index);
+                result[index] = id;
+                System.arraycopy(ids, index, result, index + 1, ids.length - index);
+                return result;
+            });
+        }
+
+        private static void removeName(Map<String, int[]> map, Map<Integer, String> names, Integer id) {
+            String name = id == null ? null : names.remove(id);
+            if (name == null) {
+                return;
+            }
+            map.computeIfPresent(name, (k, ids) -> {
+                int[] result = Arrays.stream(ids).filter(e -> e != id).toArray();
+                return result.length == 0 ? null : result;
+            });
+        }
+    }
+}
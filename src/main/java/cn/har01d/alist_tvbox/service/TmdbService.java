@@ -1,5 +1,6 @@
 package cn.har01d.alist_tvbox.service;
 
+import cn.har01d.alist_tvbox.config.AppProperties;
 import cn.har01d.alist_tvbox.domain.TaskResult;
 import cn.har01d.alist_tvbox.domain.TaskStatus;
 import cn.har01d.alist_tvbox.dto.IdName;
@@ -18,6 +19,9 @@ import cn.har01d.alist_tvbox.entity.TmdbMetaRepository;
 import cn.har01d.alist_tvbox.entity.TmdbRepository;
 import cn.har01d.alist_tvbox.exception.BadRequestException;
 import cn.har01d.alist_tvbox.util.TextUtils;
+import cn.har01d.alist_tvbox.util.TokenBucket;
+import cn.har01d.alist_tvbox.util.Utils;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
@@ -25,7 +29,9 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
@@ -35,17 +41,37 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static cn.har01d.alist_tvbox.util.Constants.TMDB_API_KEY;
 
@@ -53,38 +79,56 @@ import static cn.har01d.alist_tvbox.util.Constants.TMDB_API_KEY;
 @Service
 public class TmdbService {
     private static final Pattern YEAR2_PATTERN = Pattern.compile("(\\d{4})");
+    private static final Path CACHE_DIR = Paths.get("/data/atv/tmdb_cache");
+    private static final int CACHE_PRUNE_INTERVAL = 500;
+    private static final int SCRAPE_BATCH_SIZE = 200;
+    private static final int SYNC_THREADS = 2;
+    private static final String SYNC_META_LAST_ID = "sync_meta_last_id";
+    private final AppProperties appProperties;
     private final TmdbRepository tmdbRepository;
     private final TmdbMetaRepository tmdbMetaRepository;
     private final MetaRepository metaRepository;
     private final SettingRepository settingRepository;
     private final SiteService siteService;
     private final TaskService taskService;
+    private final TaskScheduler scheduler;
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final TitleDictionaryService titleDictionaryService;
 
     private final int rateLimit = 2000;
+    // the shared api key is kept to one request per rateLimit, own keys stay below the limit of TMDB
+    private final TokenBucket sharedKeyLimiter = TokenBucket.ofInterval(rateLimit);
+    private final TokenBucket limiter = new TokenBucket(20, 20);
+    private final Map<String, CompletableFuture<Tmdb>> requests = new ConcurrentHashMap<>();
+    private final AtomicInteger cacheWrites = new AtomicInteger();
     private Map<String, String> countryNames = new HashMap<>();
 
     private String apiKey;
-    private long lastRequestTime;
     private int siteId = 1;  // TODO: move to context
 
-    public TmdbService(TmdbRepository tmdbRepository,
+    public TmdbService(AppProperties appProperties,
+                       TmdbRepository tmdbRepository,
                        TmdbMetaRepository tmdbMetaRepository,
                        MetaRepository metaRepository,
                        SettingRepository settingRepository,
                        SiteService siteService,
                        TaskService taskService,
+                       TaskScheduler scheduler,
                        RestTemplateBuilder builder,
-                       ObjectMapper objectMapper) {
+                       ObjectMapper objectMapper,
+                       TitleDictionaryService titleDictionaryService) {
+        this.appProperties = appProperties;
         this.tmdbRepository = tmdbRepository;
         this.tmdbMetaRepository = tmdbMetaRepository;
         this.metaRepository = metaRepository;
         this.settingRepository = settingRepository;
         this.siteService = siteService;
         this.taskService = taskService;
+        this.scheduler = scheduler;
         restTemplate = builder.build();
         this.objectMapper = objectMapper;
+        this.titleDictionaryService = titleDictionaryService;
     }
 
     public void setApiKey(String apiKey) {
@@ -125,31 +169,79 @@ public class TmdbService {
 
     @Async
     public void syncMeta() {
-        var list = tmdbMetaRepository.findAll();
-        if (list.isEmpty()) {
+        long count = tmdbMetaRepository.count();
+        if (count == 0) {
             return;
         }
         var task = taskService.addSyncMeta();
         taskService.startTask(task.getId());
-        int count = list.size();
         log.info("sync {} meta", count);
-        int start = 0;
-        while (start < count) {
-            int end = start + 1000;
-            if (end > count) {
-                end = count;
+
+        // pages are read by id while at most two earlier pages are written. the id of the last page
+        // written without a failure before it is saved, an interrupted sync continues after it
+        int lastId = settingRepository.findById(SYNC_META_LAST_ID).map(e -> Integer.parseInt(e.getValue())).orElse(0);
+        if (lastId > 0) {
+            log.info("resume sync meta after {}", lastId);
+        }
+        AtomicInteger synced = new AtomicInteger();
+        int failed = 0;
+        boolean interrupted = false;
+        Deque<SyncPage> pending = new ArrayDeque<>();
+        ExecutorService writers = Executors.newFixedThreadPool(SYNC_THREADS);
+        try (TaskProgress progress = new TaskProgress(taskService, scheduler, task.getId(), null, Duration.ofMillis(appProperties.getTaskUpdateInterval()))) {
+            Pageable pageable = PageRequest.of(0, 1000, Sort.by("id"));
+            List<TmdbMeta> list;
+            try {
+                while (!(list = tmdbMetaRepository.findByIdGreaterThan(lastId, pageable)).isEmpty()) {
+                    int firstId = list.get(0).getId();
+                    lastId = list.get(list.size() - 1).getId();
+                    List<TmdbMeta> page = list;
+                    if (pending.size() == SYNC_THREADS) {
+                        failed += finishPage(pending.poll(), failed, progress);
+                    }
+                    pending.add(new SyncPage(firstId, lastId, writers.submit(() -> {
+                        syncMetas(page);
+                        progress.updateSummary("已经同步" + synced.addAndGet(page.size()) + "/" + count);
+                    })));
+                }
+                while (!pending.isEmpty()) {
+                    failed += finishPage(pending.poll(), failed, progress);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                interrupted = true;
             }
-            List<Meta> result = new ArrayList<>();
-            for (var meta : list.subList(start, end)) {
-                result.add(syncMeta(meta));
+        } finally {
+            writers.shutdownNow();
+        }
+
+        if (interrupted) {
+            taskService.failTask(task.getId(), "同步中断，下次从上次位置继续");
+        } else if (failed > 0) {
+            taskService.failTask(task.getId(), "同步失败" + failed + "页，下次从第一个失败的页继续");
+        } else {
+            settingRepository.deleteById(SYNC_META_LAST_ID);
+            taskService.completeTask(task.getId());
+        }
+        log.info("sync meta completed: {}/{} failed pages: {}", synced.get(), count, failed);
+    }
+
+    // waits for the page, returns 1 if it failed
+    private int finishPage(SyncPage page, int failed, TaskProgress progress) throws InterruptedException {
+        try {
+            page.future().get();
+            if (failed == 0) {
+                settingRepository.save(new Setting(SYNC_META_LAST_ID, String.valueOf(page.lastId())));
             }
-            metaRepository.saveAll(result);
-            taskService.updateTaskSummary(task.getId(), "已经同步" + end + "/" + count);
-            start = end;
+            return 0;
+        } catch (ExecutionException e) {
+            log.warn("sync meta {}-{} failed", page.firstId(), page.lastId(), e.getCause());
+            progress.addFailedPath("id " + page.firstId() + "-" + page.lastId());
+            return 1;
         }
+    }
 
-        taskService.completeTask(task.getId());
-        log.info("sync meta completed");
+    private record SyncPage(int firstId, int lastId, Future<?> future) {
     }
 
     public void sync() {
@@ -207,14 +299,42 @@ public class TmdbService {
         return null;
     }
 
+    // one query for all paths, instead of one for every path
+    public Map<String, Tmdb> getByPaths(Collection<String> paths) {
+        Map<String, Tmdb> tmdbs = new HashMap<>();
+        try {
+            for (TmdbMeta meta : tmdbMetaRepository.findByPathIn(paths)) {
+                if (meta.getTmdb() != null) {
+                    tmdbs.put(meta.getPath(), meta.getTmdb());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("", e);
+        }
+        return tmdbs;
+    }
+
     private void saveMeta(TmdbMeta tmdbMeta) {
         tmdbMetaRepository.save(tmdbMeta);
-        metaRepository.save(syncMeta(tmdbMeta));
+        metaRepository.save(syncMeta(tmdbMeta, metaRepository.findByPath(tmdbMeta.getPath())));
         log.debug("saveMeta: {}", tmdbMeta);
     }
 
-    private Meta syncMeta(TmdbMeta tmdbMeta) {
-        Meta meta = metaRepository.findByPath(tmdbMeta.getPath());
+    private void saveMetas(List<TmdbMeta> list) {
+        if (list.isEmpty()) {
+            return;
+        }
+        syncMetas(tmdbMetaRepository.saveAll(list));
+        log.debug("save {} meta", list.size());
+    }
+
+    private void syncMetas(List<TmdbMeta> list) {
+        Map<String, Meta> metas = metaRepository.findByPathIn(list.stream().map(TmdbMeta::getPath).toList()).stream()
+                .collect(Collectors.toMap(Meta::getPath, Function.identity(), (a, b) -> a));
+        metaRepository.upsertAll(list.stream().map(e -> syncMeta(e, metas.get(e.getPath()))).toList());
+    }
+
+    private Meta syncMeta(TmdbMeta tmdbMeta, Meta meta) {
         if (meta == null) {
             meta = new Meta();
         }
@@ -316,51 +436,61 @@ public class TmdbService {
     }
 
     public void scrapeIndexFile(Task task, List<String> lines, boolean force) {
-        int count = 0;
-        Set<String> failed = loadFailed();
-        List<String> paths = new ArrayList<>();
+        Set<String> failed = ConcurrentHashMap.newKeySet();
+        failed.addAll(loadFailed());
+        List<String> paths = Collections.synchronizedList(new ArrayList<>());
         log.debug("load {} failed names", failed.size());
         taskService.startTask(task.getId());
 
-        for (int i = 0; i < lines.size(); i++) {
-            if (isCancelled(task.getId())) {
-                break;
-            }
-            String line = lines.get(i).trim();
-            if (line.isEmpty() || line.startsWith("-") || line.startsWith("+")) {
-                log.debug("ignore line {}", line);
-                continue;
-            }
-
-            String path = line.split("#")[0];
-            if (metaRepository.existsByPath(path)) {
-                log.debug("ignore path {}", path);
-                continue;
-            }
-
-            try {
-                log.debug("handle {} {}", i, line);
-                taskService.updateTaskSummary(task.getId(), (i + 1) + ":" + line);
-                String type = guessType(line);
-                Tmdb movie = handleIndexLine(i, line, type == null ? "tv" : type, force, failed);
-                if (movie == null && type == null) {
-                    handleIndexLine(i, line, "movie", force, failed);
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, appProperties.getScrapeThreads()));
+        try (TaskProgress progress = new TaskProgress(taskService, scheduler, task.getId(), null, Duration.ofMillis(appProperties.getTaskUpdateInterval()))) {
+            ScrapeState state = new ScrapeState(task.getId(), force, failed, paths, new AtomicInteger(), progress);
+            for (int start = 0; start < lines.size() && !isCancelled(task.getId()); start += SCRAPE_BATCH_SIZE) {
+                Map<Integer, String> batch = new LinkedHashMap<>();
+                for (int i = start; i < Math.min(start + SCRAPE_BATCH_SIZE, lines.size()); i++) {
+                    String line = lines.get(i).trim();
+                    if (line.isEmpty() || line.startsWith("-") || line.startsWith("+")) {
+                        log.debug("ignore line {}", line);
+                        continue;
+                    }
+                    batch.put(i, line);
                 }
-                if (movie != null) {
-                    count++;
-                    taskService.updateTaskData(task.getId(), "成功刮削数量：" + count);
-                } else {
-                    log.warn("刮削失败：{}", line.split("#")[0]);
-                    paths.add(line.split("#")[0]);
+
+                List<String> batchPaths = batch.values().stream().map(TmdbService::getIndexPath).toList();
+                Set<String> known = metaRepository.findByPathIn(batchPaths).stream().map(Meta::getPath).collect(Collectors.toSet());
+                Map<String, TmdbMeta> metas = tmdbMetaRepository.findByPathIn(batchPaths).stream()
+                        .collect(Collectors.toMap(TmdbMeta::getPath, Function.identity(), (a, b) -> a));
+
+                List<TmdbMeta> updated = Collections.synchronizedList(new ArrayList<>());
+                List<Future<?>> futures = new ArrayList<>();
+                batch.forEach((i, line) -> {
+                    String path = getIndexPath(line);
+                    if (known.contains(path)) {
+                        log.debug("ignore path {}", path);
+                    } else {
+                        futures.add(workers.submit(() -> scrapeLine(i, line, metas.get(path), updated, state)));
+                    }
+                });
+                for (Future<?> future : futures) {
+                    future.get();
                 }
 
-                if (i > 0 && i % 10 == 0) {
-                    writeText("/data/atv/tmdb_paths.txt", String.join("\n", paths));
-                    writeText("/data/atv/tmdb_failed.txt", String.join("\n", failed));
+                try {
+                    saveMetas(updated);
+                } catch (Exception e) {
+                    log.warn("save {} meta failed", updated.size(), e);
                 }
-            } catch (Exception e) {
-                log.warn("{}: {}", i, line, e);
+
+                writeText("/data/atv/tmdb_paths.txt", String.join("\n", paths));
+                writeText("/data/atv/tmdb_failed.txt", String.join("\n", failed));
             }
+            progress.updateData("成功刮削数量：" + state.count().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("scrape failed", e);
+        } finally {
+            workers.shutdownNow();
         }
 
         taskService.completeTask(task.getId());
@@ -369,6 +499,37 @@ public class TmdbService {
         writeText("/data/atv/tmdb_failed.txt", String.join("\n", failed));
     }
 
+    private static String getIndexPath(String line) {
+        return line.split("#")[0];
+    }
+
+    private void scrapeLine(int id, String line, TmdbMeta meta, List<TmdbMeta> updated, ScrapeState state) {
+        if (isCancelled(state.taskId())) {
+            return;
+        }
+
+        try {
+            log.debug("handle {} {}", id, line);
+            state.progress().updateSummary((id + 1) + ":" + line);
+            String type = guessType(line);
+            Tmdb movie = handleIndexLine(id, line, meta, type == null ? "tv" : type, state.force(), state.failed(), updated);
+            if (movie == null && type == null) {
+                movie = handleIndexLine(id, line, meta, "movie", state.force(), state.failed(), updated);
+            }
+            if (movie != null) {
+                state.progress().updateData("成功刮削数量：" + state.count().incrementAndGet());
+            } else {
+                log.warn("刮削失败：{}", getIndexPath(line));
+                state.paths().add(getIndexPath(line));
+            }
+        } catch (Exception e) {
+            log.warn("{}: {}", id, line, e);
+        }
+    }
+
+    private record ScrapeState(Integer taskId, boolean force, Set<String> failed, List<String> paths, AtomicInteger count, TaskProgress progress) {
+    }
+
     private String guessType(String path) {
         if (path.contains("电影") || path.toLowerCase().contains("movie")) {
             return "movie";
@@ -403,11 +564,12 @@ public class TmdbService {
         return new HashSet<>();
     }
 
-    private Tmdb handleIndexLine(int id, String line, String type, boolean force, Set<String> failed) {
+    private Tmdb handleIndexLine(int id, String line, TmdbMeta meta, String type, boolean force, Set<String> failed, List<TmdbMeta> updated) {
         String[] parts = line.split("#");
         String path = parts[0];
+        // responses cached by an earlier scrape are reused unless forced
+        boolean cached = !force;
 
-        TmdbMeta meta = tmdbMetaRepository.findByPath(path);
         if (meta == null) {
             meta = new TmdbMeta();
             meta.setPath(path);
@@ -427,7 +589,7 @@ public class TmdbService {
             log.debug("{} {}", name, number);
             if (number.length() > 5) {
                 try {
-                    movie = getById(type, Integer.parseInt(number));
+                    movie = getById(type, Integer.parseInt(number), cached);
                 } catch (Exception e) {
                     log.warn("{} {}", id + 1, path, e);
                 }
@@ -455,7 +617,7 @@ public class TmdbService {
 
         if (movie != null && TextUtils.isNormal(name) && TextUtils.isNormal(movie.getName())) {
             log.info("[{}] - add {} {} for path {}", id, movie.getId(), movie.getName(), path);
-            return updateMeta(path, meta, movie);
+            return updateMeta(path, meta, movie, updated);
         }
 
         String original = name;
@@ -475,7 +637,7 @@ public class TmdbService {
 
             try {
                 log.info("[{}] handle name: {} - path: {}", id, newname, path);
-                movie = search(type, newname, year);
+                movie = search(type, newname, Objects.toString(year, ""), false, cached);
             } catch (RuntimeException e) {
                 throw e;
             } catch (Exception e) {
@@ -491,7 +653,7 @@ public class TmdbService {
                         if (n.length() > 1 && !failed.contains(n)) {
                             log.info("[{}] - handle name: {} - path: {}", id, n, path);
                             count++;
-                            movie = search(type, n, year, true);
+                            movie = search(type, n, Objects.toString(year, ""), true, cached);
                             if (movie != null) {
                                 break;
                             }
@@ -506,23 +668,14 @@ public class TmdbService {
             }
 
             if (movie != null && TextUtils.isNormal(movie.getName())) {
-                meta.setPath(path);
-                meta.setTmdb(movie);
-                meta.setTmId(movie.getTmdbId());
-                meta.setYear(movie.getYear());
-                meta.setName(movie.getName());
-                if (StringUtils.isNotBlank(movie.getScore())) {
-                    meta.setScore((int) (Double.parseDouble(movie.getScore()) * 10));
-                }
-                saveMeta(meta);
                 log.info("{} - add {} '{}' for path {}", id, movie.getId(), movie.getName(), path);
-                return movie;
+                return updateMeta(path, meta, movie, updated);
             }
         }
 
         if (movie != null && TextUtils.isNormal(name) && TextUtils.isNormal(movie.getName())) {
             log.info("[{}] add {} {} for path {}", id, movie.getId(), movie.getName(), path);
-            return updateMeta(path, meta, movie);
+            return updateMeta(path, meta, movie, updated);
         } else {
             log.warn("add failed: {} {}", name, path);
             failed.add(name);
@@ -533,25 +686,35 @@ public class TmdbService {
 
     public Tmdb getByName(String name) {
         try {
-            name = TextUtils.fixName(name);
+            return titleDictionaryService.getTmdb(name, this::findByName);
+        } catch (Exception e) {
+            log.warn("", e);
+        }
+        return null;
+    }
 
-            List<Tmdb> movies = tmdbRepository.getByName(name);
-            if (movies != null && !movies.isEmpty()) {
-                return movies.get(0);
-            }
+    private Tmdb findByName(String name) {
+        if (titleDictionaryService.isReady()) {
+            Integer id = titleDictionaryService.findTmdb(name);
+            return id == null ? null : tmdbRepository.findById(id).orElse(null);
+        }
 
-            String newName = TextUtils.updateName(name);
-            if (!newName.equals(name)) {
-                name = newName;
-                log.debug("search by name: {}", name);
+        name = TextUtils.fixName(name);
 
-                movies = tmdbRepository.getByName(name);
-                if (movies != null && !movies.isEmpty()) {
-                    return movies.get(0);
-                }
+        List<Tmdb> movies = tmdbRepository.getByName(name);
+        if (movies != null && !movies.isEmpty()) {
+            return movies.get(0);
+        }
+
+        String newName = TextUtils.updateName(name);
+        if (!newName.equals(name)) {
+            name = newName;
+            log.debug("search by name: {}", name);
+
+            movies = tmdbRepository.getByName(name);
+            if (movies != null && !movies.isEmpty()) {
+                return movies.get(0);
             }
-        } catch (Exception e) {
-            log.warn("", e);
         }
         return null;
     }
@@ -561,7 +724,7 @@ public class TmdbService {
         return task.getStatus() == TaskStatus.COMPLETED && task.getResult() == TaskResult.CANCELLED;
     }
 
-    private Tmdb updateMeta(String path, TmdbMeta meta, Tmdb movie) {
+    private Tmdb updateMeta(String path, TmdbMeta meta, Tmdb movie, List<TmdbMeta> updated) {
         meta.setPath(path);
         meta.setTmdb(movie);
         meta.setTmId(movie.getTmdbId());
@@ -570,7 +733,7 @@ public class TmdbService {
         if (StringUtils.isNotBlank(movie.getScore())) {
             meta.setScore((int) (Double.parseDouble(movie.getScore()) * 10));
         }
-        saveMeta(meta);
+        updated.add(meta);
         return movie;
     }
 
@@ -703,54 +866,55 @@ public class TmdbService {
         return search(type, name, Objects.toString(year, ""), match);
     }
 
-    private void sleep(long time) {
-        try {
-            Thread.sleep(time);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+    public Tmdb search(String type, String name, String year, boolean match) {
+        return search(type, name, year, match, false);
     }
 
-    public Tmdb search(String type, String name, String year, boolean match) {
+    private Tmdb search(String type, String name, String year, boolean match, boolean cached) {
+        return coalesce("search:" + type + ":" + name + ":" + year + ":" + match, () -> doSearch(type, name, year, match, cached));
+    }
+
+    private Tmdb doSearch(String type, String name, String year, boolean match, boolean cached) {
         String url = "https://api.themoviedb.org/3/search/" + type + "?query=" + name + "&api_key=" + apiKey + "&language=zh-CN&year=" + year;
-        long now = System.currentTimeMillis();
-        if (!log.isDebugEnabled() && TMDB_API_KEY.equals(apiKey) && now - lastRequestTime < rateLimit) {
-            sleep(lastRequestTime + rateLimit - now);
-        }
         log.debug("search: {}", url);
-        TmdbList list = restTemplate.getForObject(url, TmdbList.class);
-        lastRequestTime = now;
+        // a title that is not found now may be added to tmdb later
+        TmdbList list = get(url, TmdbList.class, cached, e -> e.getResults() != null && !e.getResults().isEmpty());
         if (list != null && list.getResults() != null) {
             log.debug("get {} reasults", list.getResults().size());
             for (TmdbDto dto : list.getResults()) {
                 log.debug("{} - {} {}", name, dto.getId(), StringUtils.isBlank(dto.getName()) ? dto.getTitle() : dto.getName());
                 if (name.equals(dto.getTitle()) || name.equals(dto.getName())) {
-                    return getById(type, dto.getId());
+                    return getById(type, dto.getId(), cached);
                 }
             }
             if (match) {
                 return null;
             }
             if (!list.getResults().isEmpty()) {
-                return getById(type, list.getResults().get(0).getId());
+                return getById(type, list.getResults().get(0).getId(), cached);
             }
         }
         return null;
     }
 
     public Tmdb getById(String type, Integer id) {
-        return tmdbRepository.findByTypeAndTmdbId(type, id).orElseGet(() -> getDetails(type, id));
+        return getById(type, id, false);
+    }
+
+    private Tmdb getById(String type, Integer id, boolean cached) {
+        return tmdbRepository.findByTypeAndTmdbId(type, id)
+                .orElseGet(() -> coalesce("details:" + type + ":" + id, () -> tmdbRepository.findByTypeAndTmdbId(type, id)
+                        .orElseGet(() -> getDetails(type, id, cached))));
     }
 
     public Tmdb getDetails(String type, Integer id) {
+        return getDetails(type, id, false);
+    }
+
+    private Tmdb getDetails(String type, Integer id, boolean cached) {
         String url = "https://api.themoviedb.org/3/" + type + "/" + id + "?language=zh-CN&append_to_response=credits&api_key=" + apiKey;
-        long now = System.currentTimeMillis();
-        if (!log.isDebugEnabled() && TMDB_API_KEY.equals(apiKey) && now - lastRequestTime < rateLimit) {
-            sleep(lastRequestTime + rateLimit - now);
-        }
         log.debug("getDetails: {}", url);
-        TmdbDto dto = restTemplate.getForObject(url, TmdbDto.class);
-        lastRequestTime = now;
+        TmdbDto dto = get(url, TmdbDto.class, cached, Objects::nonNull);
         log.debug("getDetails: {} {} {}", type, id, dto);
         Tmdb tmdb = new Tmdb();
         tmdb.setType(type);
@@ -792,6 +956,128 @@ public class TmdbService {
         return tmdbRepository.save(tmdb);
     }
 
+    // concurrent calls with the same key wait for the first one instead of sending their own request
+    private Tmdb coalesce(String key, Supplier<Tmdb> loader) {
+        CompletableFuture<Tmdb> future = new CompletableFuture<>();
+        CompletableFuture<Tmdb> running = requests.putIfAbsent(key, future);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        try {
+            Tmdb tmdb = loader.get();
+            future.complete(tmdb);
+            return tmdb;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            requests.remove(key, future);
+        }
+    }
+
+    // responses are kept on disk by url without the api key, so a scrape without force does not fetch them
+    // again until they expire. the oldest files are removed when there are more than the cache size
+    private <T> T get(String url, Class<T> type, boolean cached, Predicate<T> cacheable) {
+        Path file = CACHE_DIR.resolve(Utils.md5(url.replace("api_key=" + apiKey, "")) + ".json");
+        if (cached && isFresh(file)) {
+            try {
+                return objectMapper.readValue(file.toFile(), type);
+            } catch (IOException e) {
+                log.warn("read cache {} failed", file, e);
+            }
+        }
+
+        acquire();
+        String json = restTemplate.getForObject(url, String.class);
+        if (json == null) {
+            return null;
+        }
+
+        T result;
+        try {
+            result = objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        if (cacheable.test(result)) {
+            writeCache(file, json);
+        }
+        return result;
+    }
+
+    private boolean isFresh(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isAfter(Instant.now().minus(Duration.ofDays(appProperties.getTmdbCacheDays())));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void writeCache(Path file, String json) {
+        try {
+            Files.createDirectories(CACHE_DIR);
+            Path temp = Files.createTempFile(CACHE_DIR, "response", ".tmp");
+            Files.writeString(temp, json);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("write cache {} failed", file, e);
+        }
+        if (cacheWrites.getAndIncrement() % CACHE_PRUNE_INTERVAL == 0) {
+            pruneCache();
+        }
+    }
+
+    private void pruneCache() {
+        Instant expired = Instant.now().minus(Duration.ofDays(appProperties.getTmdbCacheDays()));
+        try (Stream<Path> stream = Files.list(CACHE_DIR)) {
+            List<Map.Entry<Path, Instant>> files = stream
+                    .filter(e -> e.getFileName().toString().endsWith(".json"))
+                    .map(e -> Map.entry(e, getModified(e)))
+                    .sorted(Map.Entry.<Path, Instant>comparingByValue().reversed())
+                    .toList();
+            int removed = 0;
+            for (int i = 0; i < files.size(); i++) {
+                if (i >= appProperties.getTmdbCacheSize() || files.get(i).getValue().isBefore(expired)) {
+                    Files.deleteIfExists(files.get(i).getKey());
+                    removed++;
+                }
+            }
+            log.debug("prune tmdb cache: {} files, {} removed", files.size(), removed);
+        } catch (IOException e) {
+            log.warn("prune cache {} failed", CACHE_DIR, e);
+        }
+    }
+
+    private static Instant getModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant();
+        } catch (IOException e) {
+            return Instant.EPOCH;
+        }
+    }
+
+    private void acquire() {
+        try {
+            if (!TMDB_API_KEY.equals(apiKey)) {
+                limiter.acquire();
+            } else if (!log.isDebugEnabled()) {
+                sharedKeyLimiter.acquire();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
     private String fixGenre(String name) {
         if ("Sci-Fi & Fantasy".equals(name)) {
             return "科幻,幻想";
@@ -3,6 +3,7 @@ package cn.har01d.alist_tvbox.service;
 import cn.har01d.alist_tvbox.config.AppProperties;
 import cn.har01d.alist_tvbox.domain.DriverType;
 import cn.har01d.alist_tvbox.dto.FileItem;
+import cn.har01d.alist_tvbox.dto.MetaFilter;
 import cn.har01d.alist_tvbox.dto.Subtitle;
 import cn.har01d.alist_tvbox.entity.AListAlias;
 import cn.har01d.alist_tvbox.entity.AListAliasRepository;
@@ -12,6 +13,7 @@ import cn.har01d.alist_tvbox.entity.DriverAccount;
 import cn.har01d.alist_tvbox.entity.DriverAccountRepository;
 import cn.har01d.alist_tvbox.entity.Meta;
 import cn.har01d.alist_tvbox.entity.MetaRepository;
+import cn.har01d.alist_tvbox.entity.MetaSpecifications;
 import cn.har01d.alist_tvbox.entity.Movie;
 import cn.har01d.alist_tvbox.entity.PikPakAccountRepository;
 import cn.har01d.alist_tvbox.entity.Share;
@@ -30,14 +32,17 @@ import cn.har01d.alist_tvbox.tvbox.Category;
 import cn.har01d.alist_tvbox.tvbox.CategoryList;
 import cn.har01d.alist_tvbox.tvbox.MovieDetail;
 import cn.har01d.alist_tvbox.tvbox.MovieList;
+import cn.har01d.alist_tvbox.tvbox.SearchRanker;
 import cn.har01d.alist_tvbox.util.Constants;
 import cn.har01d.alist_tvbox.util.TextUtils;
 import cn.har01d.alist_tvbox.util.Utils;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -48,6 +53,8 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -60,6 +67,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -67,13 +75,20 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -91,6 +106,7 @@ public class TvBoxService {
     private static final Pattern NUMBER1 = Pattern.compile("^SE(\\d{1,2}).*");
     private static final Pattern NUMBER2 = Pattern.compile("^S(\\d{1,2}).*");
     private static final Pattern NUMBER3 = Pattern.compile("^第(.{1,2})季.*");
+    private static final Duration META_CURSOR_DELAY = Duration.ofSeconds(10);
 
     private final AccountRepository accountRepository;
     private final AListAliasRepository aliasRepository;
@@ -100,6 +116,15 @@ public class TvBoxService {
 
     private final AListService aListService;
     private final IndexService indexService;
+    private final IndexSearchService indexSearchService;
+    private final SearchCacheService searchCacheService;
+    private final MetaSearchService metaSearchService;
+    private final Cache<String, MetaCursor> metaCursors = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+    private final AtomicBoolean metaCursorsDirty = new AtomicBoolean();
+    private final TaskScheduler scheduler;
     private final SiteService siteService;
     private final AppProperties appProperties;
     private final DoubanService doubanService;
@@ -113,6 +138,13 @@ public class TvBoxService {
     private final Cache<Integer, List<String>> cache = Caffeine.newBuilder()
             .maximumSize(10)
             .build();
+    // prefetches run on a small pool with a short queue, the ones that do not fit are rejected and dropped
+    private final ExecutorService prefetcher = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(16));
+    private final Cache<String, Boolean> prefetched = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(Duration.ofSeconds(30))
+            .build();
 
     private final List<FilterValue> filters = Arrays.asList(
             new FilterValue("原始顺序", ""),
@@ -152,6 +184,10 @@ public class TvBoxService {
                         MetaRepository metaRepository,
                         AListService aListService,
                         IndexService indexService,
+                        IndexSearchService indexSearchService,
+                        SearchCacheService searchCacheService,
+                        MetaSearchService metaSearchService,
+                        TaskScheduler scheduler,
                         SiteService siteService,
                         AppProperties appProperties,
                         DoubanService doubanService,
@@ -169,6 +205,10 @@ public class TvBoxService {
         this.metaRepository = metaRepository;
         this.aListService = aListService;
         this.indexService = indexService;
+        this.indexSearchService = indexSearchService;
+        this.searchCacheService = searchCacheService;
+        this.metaSearchService = metaSearchService;
+        this.scheduler = scheduler;
         this.siteService = siteService;
         this.appProperties = appProperties;
         this.doubanService = doubanService;
@@ -631,6 +671,16 @@ public class TvBoxService {
     }
 
     public MovieList search(Integer type, String ac, String keyword, int page) {
+        return searchCacheService.get(getBaseUrl(), type, ac, keyword, page, siteService.getGeneration(), () -> doSearch(type, ac, keyword, page));
+    }
+
+    // the results contain urls of this server, built from the host and scheme of the request
+    private String getBaseUrl() {
+        boolean https = appProperties.isEnableHttps() && !Utils.isLocalAddress();
+        return ServletUriComponentsBuilder.fromCurrentContextPath().build().toUriString() + (https ? " https" : "");
+    }
+
+    private MovieList doSearch(Integer type, String ac, String keyword, int page) {
         MovieList result = new MovieList();
         List<MovieDetail> list = new ArrayList<>();
         sites = siteService.findAll();
@@ -641,7 +691,7 @@ public class TvBoxService {
         }
 
         if (type != null && type == 0) {
-            for (Meta meta : metaRepository.findByPathContains(keyword, PageRequest.of(page - 1, appProperties.getMaxSearchResult(), Sort.Direction.DESC, "time", "id"))) {
+            for (Meta meta : metaSearchService.findMetas(keyword, PageRequest.of(page - 1, appProperties.getMaxSearchResult(), Sort.Direction.DESC, "time", "id"))) {
                 String name = getName(meta);
                 boolean isMediaFile = isMediaFile(meta.getPath());
                 String newPath = fixPath(meta.getPath() + (isMediaFile ? "" : PLAYLIST));
@@ -659,7 +709,7 @@ public class TvBoxService {
                 list.add(movieDetail);
             }
         } else {
-            List<Future<List<MovieDetail>>> futures = new ArrayList<>();
+            List<Future<List<SearchRanker.Candidate>>> futures = new ArrayList<>();
             for (Site site : siteService.list()) {
                 if (site.isSearchable()) {
                     if (StringUtils.isNotEmpty(site.getIndexFile())) {
@@ -670,15 +720,16 @@ public class TvBoxService {
                 }
             }
 
-            for (Future<List<MovieDetail>> future : futures) {
+            SearchRanker ranker = new SearchRanker(keyword, appProperties.getMaxSearchResult());
+            for (Future<List<SearchRanker.Candidate>> future : futures) {
                 try {
-                    list.addAll(future.get());
+                    ranker.addAll(future.get());
                 } catch (Exception e) {
                     log.warn("", e);
                 }
             }
 
-            list = list.stream().distinct().limit(appProperties.getMaxSearchResult()).toList();
+            list = ranker.getResult();
             for (MovieDetail movie : list) {
                 if (movie.getVod_pic() != null && movie.getVod_pic().contains(".doubanio.com/")) {
                     fixCover(movie);
@@ -694,13 +745,18 @@ public class TvBoxService {
         return result;
     }
 
-    private List<MovieDetail> searchByFile(Site site, String ac, String keyword) throws IOException {
+    private List<SearchRanker.Candidate> searchByFile(Site site, String ac, String keyword) throws IOException {
         String indexFile = site.getIndexFile();
         if (indexFile.startsWith("http://") || indexFile.startsWith("https://")) {
             indexFile = indexService.downloadIndexFile(site);
         }
 
-        List<MovieDetail> list = searchFromIndexFile(site, ac, keyword, indexFile);
+        List<SearchRanker.Candidate> list = new ArrayList<>();
+        if (indexFile == null) {
+            log.info("index file of site {}:{} is downloading", site.getId(), site.getName());
+        } else {
+            list = searchFromIndexFile(site, ac, keyword, indexFile);
+        }
         File customIndexFile = new File("/data/index/" + site.getId() + "/custom_index.txt");
         log.debug("custom index file: {}", customIndexFile);
         if (customIndexFile.exists()) {
@@ -710,19 +766,15 @@ public class TvBoxService {
         return list;
     }
 
-    private List<MovieDetail> searchFromIndexFile(Site site, String ac, String keyword, String indexFile) throws IOException {
+    // the best lines of the index file, their meta is only looked up if they are kept by the ranker
+    private List<SearchRanker.Candidate> searchFromIndexFile(Site site, String ac, String keyword, String indexFile) throws IOException {
         log.info("search \"{}\" from site {}:{}, index file: {}", keyword, site.getId(), site.getName(), indexFile);
-        Set<String> keywords = Arrays.stream(keyword.split("\\s+")).collect(Collectors.toSet());
-        Set<String> lines = Files.readAllLines(Paths.get(indexFile))
-                .stream()
-                .filter(path -> !path.startsWith("-"))
-                .filter(path -> keywords.stream().allMatch(path::contains))
-                .limit(appProperties.getMaxSearchResult())
-                .collect(Collectors.toSet());
+        List<String> hits = indexSearchService.search(indexFile, keyword, appProperties.getMaxSearchResult());
+        Set<String> lines = new HashSet<>(hits);
 
         log.debug("search \"{}\" from file: {}, result: {}", keyword, indexFile, lines.size());
-        List<MovieDetail> list = new ArrayList<>();
-        for (String line : lines) {
+        List<SearchRanker.Candidate> list = new ArrayList<>();
+        for (String line : hits) {
             if (line.startsWith("+")) {
                 line = line.substring(1);
             }
@@ -759,16 +811,13 @@ public class TvBoxService {
             } else {
                 movieDetail.setVod_remarks(getLabel(path));
             }
-            if (!isMediaFile) {
-                setMovieInfo(site, movieDetail, "", getParent(path), false);
-            }
-            list.add(movieDetail);
+            String parent = getParent(path);
+            list.add(new SearchRanker.Candidate(movieDetail, isMediaFile ? null : () -> setMovieInfo(site, movieDetail, "", parent, false)));
         }
-        list.sort(Comparator.comparing(MovieDetail::getVod_id));
         return list;
     }
 
-    private List<MovieDetail> searchByApi(Site site, String ac, String keyword) throws IOException {
+    private List<SearchRanker.Candidate> searchByApi(Site site, String ac, String keyword) throws IOException {
         if (site.isXiaoya()) {
             try {
                 return searchByXiaoya(site, ac, keyword);
@@ -777,7 +826,7 @@ public class TvBoxService {
             }
         }
 
-        List<MovieDetail> result = new ArrayList<>();
+        List<SearchRanker.Candidate> result = new ArrayList<>();
         for (File file : Utils.listFiles("/data/index/" + site.getId(), "txt")) {
             result.addAll(searchFromIndexFile(site, ac, keyword, file.getAbsolutePath()));
         }
@@ -801,10 +850,8 @@ public class TvBoxService {
                         movieDetail.setVod_name(e.getName());
                         movieDetail.setVod_pic(Constants.ALIST_PIC);
                         movieDetail.setVod_tag(FILE);
-                        if (!isMediaFile) {
-                            setMovieInfo(site, movieDetail, e.getName(), getParent(path), false);
-                        }
-                        return movieDetail;
+                        String parent = getParent(path);
+                        return new SearchRanker.Candidate(movieDetail, isMediaFile ? null : () -> setMovieInfo(site, movieDetail, e.getName(), parent, false));
                     })
                     .filter(Objects::nonNull)
                     .toList();
@@ -817,8 +864,8 @@ public class TvBoxService {
         return result;
     }
 
-    private List<MovieDetail> searchByXiaoya(Site site, String ac, String keyword) throws IOException {
-        List<MovieDetail> list = new ArrayList<>();
+    private List<SearchRanker.Candidate> searchByXiaoya(Site site, String ac, String keyword) throws IOException {
+        List<SearchRanker.Candidate> list = new ArrayList<>();
         for (File file : Utils.listFiles("/data/index/" + site.getId(), "txt")) {
             list.addAll(searchFromIndexFile(site, ac, keyword, file.getAbsolutePath()));
         }
@@ -851,10 +898,8 @@ public class TvBoxService {
             movieDetail.setVod_pic(Constants.ALIST_PIC);
             movieDetail.setVod_content(path.replace(PLAYLIST, ""));
             movieDetail.setVod_tag(FILE);
-            if (!isMediaFile) {
-                setMovieInfo(site, movieDetail, "", getParent(path), false);
-            }
-            list.add(movieDetail);
+            String parent = getParent(path);
+            list.add(new SearchRanker.Candidate(movieDetail, isMediaFile ? null : () -> setMovieInfo(site, movieDetail, "", parent, false)));
             if (list.size() > appProperties.getMaxSearchResult()) {
                 break;
             }
@@ -927,6 +972,7 @@ public class TvBoxService {
 
         List<MovieDetail> folders = new ArrayList<>();
         List<MovieDetail> files = new ArrayList<>();
+        Map<String, MovieDetail> paths = new LinkedHashMap<>();
         MovieList result = new MovieList();
 
         FsResponse fsResponse = aListService.listFiles(site, path, page, size);
@@ -964,13 +1010,14 @@ public class TvBoxService {
                     }
                     movieDetail.setCate(new CategoryList());
                 }
-                setMovieInfo(site, movieDetail, fsInfo.getName(), newPath, false);
+                paths.put(newPath, movieDetail);
                 folders.add(movieDetail);
             } else {
                 files.add(movieDetail);
             }
         }
 
+        setMovieInfo(site, paths);
         sortFiles(sort, folders, files);
 
         result.getList().addAll(folders);
@@ -990,6 +1037,9 @@ public class TvBoxService {
         result.setTotal(total);
         result.setLimit(result.getList().size());
         result.setPagecount((total + size - 1) / size);
+        if (page < result.getPagecount()) {
+            prefetch("list:" + site.getId() + path + "#" + (page + 1), () -> aListService.listFiles(site, path, page + 1, size));
+        }
         log.debug("list: {}", result);
         return result;
     }
@@ -1056,44 +1106,7 @@ public class TvBoxService {
             path = line;
             log.debug("get movies from {} {}", path, pages);
             pageable = PageRequest.of(page - pages - 1, size, pageable.getSort());
-            if (year.isEmpty()) {
-                if ("normal".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreGreaterThanEqual(path, 60, pageable);
-                } else if ("high".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreGreaterThanEqual(path, 80, pageable);
-                } else if ("low".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreLessThan(path, 60, pageable);
-                } else if ("no".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreIsNull(path, pageable);
-                } else {
-                    list = metaRepository.findByPathStartsWith(path, pageable);
-                }
-            } else if ("others".equals(year)) {
-                int y = LocalDate.now().getYear() - 20;
-                if ("normal".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreGreaterThanEqualAndYearLessThan(path, 60, y, pageable);
-                } else if ("high".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreGreaterThanEqualAndYearLessThan(path, 80, y, pageable);
-                } else if ("low".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreLessThanAndYearLessThan(path, 60, y, pageable);
-                } else if ("no".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreIsNullAndYearLessThan(path, y, pageable);
-                } else {
-                    list = metaRepository.findByPathStartsWithAndYearLessThan(path, y, pageable);
-                }
-            } else {
-                if ("normal".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreGreaterThanEqualAndYear(path, 60, Integer.parseInt(year), pageable);
-                } else if ("high".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreGreaterThanEqualAndYear(path, 80, Integer.parseInt(year), pageable);
-                } else if ("low".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreLessThanAndYear(path, 60, Integer.parseInt(year), pageable);
-                } else if ("no".equals(score)) {
-                    list = metaRepository.findByPathStartsWithAndScoreIsNullAndYear(path, Integer.parseInt(year), pageable);
-                } else {
-                    list = metaRepository.findByPathStartsWithAndYear(path, Integer.parseInt(year), pageable);
-                }
-            }
+            list = findMetas(MetaFilter.of(path, score, year), pageable);
             pages += list.getTotalPages();
             if (list.getNumberOfElements() > 0) {
                 break;
@@ -1145,6 +1158,38 @@ public class TvBoxService {
         return result;
     }
 
+    // a scrape saves meta one by one, the cursors are not used while dirty and cleared once after the delay
+    public void invalidateMetaCursors() {
+        if (metaCursorsDirty.compareAndSet(false, true)) {
+            scheduler.schedule(() -> {
+                metaCursors.invalidateAll();
+                metaCursorsDirty.set(false);
+            }, Instant.now().plus(META_CURSOR_DELAY));
+        }
+    }
+
+    private Page<Meta> findMetas(MetaFilter filter, Pageable pageable) {
+        // ties are broken by id, so the order is stable and a page can continue after the last row of the previous one
+        Sort sort = pageable.getSort().getOrderFor("id") == null ? pageable.getSort().and(Sort.by("id")) : pageable.getSort();
+        String key = filter + ":" + sort + ":" + pageable.getPageNumber();
+        boolean dirty = metaCursorsDirty.get();
+        MetaCursor cursor = dirty ? null : metaCursors.getIfPresent(key);
+        Specification<Meta> spec = MetaSpecifications.byFilter(filter);
+        Specification<Meta> after = cursor == null ? null : MetaSpecifications.after(sort, cursor.last());
+        Page<Meta> list;
+        if (after != null) {
+            list = new PageImpl<>(metaRepository.findAll(spec.and(after), sort, pageable.getPageSize()), pageable, cursor.total());
+        } else {
+            list = metaRepository.findAll(spec, PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort));
+        }
+
+        if (!dirty && list.hasContent()) {
+            String next = filter + ":" + sort + ":" + (pageable.getPageNumber() + 1);
+            metaCursors.put(next, new MetaCursor(list.getContent().get(list.getNumberOfElements() - 1), list.getTotalElements()));
+        }
+        return list;
+    }
+
     private static String getName(Meta meta) {
         String name;
         if (meta.getTmdb() != null) {
@@ -1163,13 +1208,14 @@ public class TvBoxService {
         }
         Comparator<MovieDetail> comparator;
         switch (sort) {
-            case "name,asc" -> comparator = Comparator.comparing(e -> new FileNameInfo(e.getVod_name()));
+            case "name,asc", "name,desc" -> {
+                boolean reversed = sort.equals("name,desc");
+                FileNameInfo.sort(folders, MovieDetail::getVod_name, reversed);
+                FileNameInfo.sort(files, MovieDetail::getVod_name, reversed);
+                return;
+            }
             case "time,asc" -> comparator = Comparator.comparing(MovieDetail::getVod_time);
             case "size,asc" -> comparator = Comparator.comparing(MovieDetail::getSize);
-            case "name,desc" -> {
-                comparator = Comparator.comparing(e -> new FileNameInfo(e.getVod_name()));
-                comparator = comparator.reversed();
-            }
             case "time,desc" -> {
                 comparator = Comparator.comparing(MovieDetail::getVod_time);
                 comparator = comparator.reversed();
@@ -1304,6 +1350,10 @@ public class TvBoxService {
             result.put("header", "{\"User-Agent\":\"" + USER_AGENT + "\",\"Referer\":\"" + Constants.ALIPAN + "\"}");
         }
 
+        if (isMediaFile(path)) {
+            prefetchNextEpisode(site, path);
+        }
+
         if (!getSub) {
             log.debug("getPlayUrl result: {}", result);
             return result;
@@ -1655,7 +1705,7 @@ public class TvBoxService {
                 log.debug("files common prefix: '{}'  common suffix: '{}'", prefix, suffix);
 
                 if (appProperties.isSort()) {
-                    fileNames.sort(Comparator.comparing(FileNameInfo::new));
+                    FileNameInfo.sort(fileNames);
                 }
 
                 List<String> urls = new ArrayList<>();
@@ -1684,7 +1734,7 @@ public class TvBoxService {
             log.debug("files common prefix: '{}'  common suffix: '{}'", prefix, suffix);
 
             if (appProperties.isSort()) {
-                fileNames.sort(Comparator.comparing(FileNameInfo::new));
+                FileNameInfo.sort(fileNames);
             }
 
             for (String name : fileNames) {
@@ -1742,7 +1792,7 @@ public class TvBoxService {
             log.debug("files common prefix: '{}'  common suffix: '{}'", prefix, suffix);
 
             if (appProperties.isSort()) {
-                fileNames.sort(Comparator.comparing(FileNameInfo::new));
+                FileNameInfo.sort(fileNames);
             }
 
             List<String> urls = new ArrayList<>();
@@ -1782,7 +1832,7 @@ public class TvBoxService {
                 log.debug("files common prefix: '{}'  common suffix: '{}'", prefix, suffix);
 
                 if (appProperties.isSort()) {
-                    fileNames.sort(Comparator.comparing(FileNameInfo::new));
+                    FileNameInfo.sort(fileNames);
                 }
 
                 List<String> urls = new ArrayList<>();
@@ -1815,7 +1865,7 @@ public class TvBoxService {
                     log.debug("files common prefix: '{}'  common suffix: '{}'", prefix, suffix);
 
                     if (appProperties.isSort()) {
-                        fileNames.sort(Comparator.comparing(FileNameInfo::new));
+                        FileNameInfo.sort(fileNames);
                     }
 
                     List<String> urls = new ArrayList<>();
@@ -1846,17 +1896,47 @@ public class TvBoxService {
         return text;
     }
 
+    // the folders of a page and their parents are looked up by path with one query for each table,
+    // only the folders without a scraped path fall back to the lookups by name
+    private void setMovieInfo(Site site, Map<String, MovieDetail> folders) {
+        if (folders.isEmpty()) {
+            return;
+        }
+
+        Map<String, Tmdb> tmdbs = Map.of();
+        Map<String, Movie> movies = Map.of();
+        if (site.isXiaoya()) {
+            Set<String> paths = new HashSet<>();
+            for (String path : folders.keySet()) {
+                paths.add(path);
+                paths.add(getParent(path));
+            }
+            tmdbs = tmdbService.getByPaths(paths);
+            movies = doubanService.getByPaths(paths);
+        }
+
+        for (var entry : folders.entrySet()) {
+            MovieDetail movieDetail = entry.getValue();
+            setMovieInfo(site, movieDetail, movieDetail.getVod_name(), entry.getKey(), false, tmdbs::get, movies::get);
+        }
+    }
+
     private boolean setMovieInfo(Site site, MovieDetail movieDetail, String filename, String path, boolean details) {
-        if (setTmdbInfo(site, movieDetail, path, details)) {
+        return setMovieInfo(site, movieDetail, filename, path, details, tmdbService::getByPath, doubanService::getByPath);
+    }
+
+    private boolean setMovieInfo(Site site, MovieDetail movieDetail, String filename, String path, boolean details,
+                                 Function<String, Tmdb> tmdbByPath, Function<String, Movie> movieByPath) {
+        if (setTmdbInfo(site, movieDetail, path, details, tmdbByPath)) {
             return true;
         }
 
         try {
             Movie movie = null;
             if (site.isXiaoya()) {
-                movie = doubanService.getByPath(path);
+                movie = movieByPath.apply(path);
                 if (movie == null) {
-                    movie = doubanService.getByPath(getParent(path));
+                    movie = movieByPath.apply(getParent(path));
                 }
             }
 
@@ -1931,6 +2011,7 @@ public class TvBoxService {
         movieDetail.setVod_pic(movie.getCover());
         movieDetail.setVod_year(String.valueOf(movie.getYear()));
         movieDetail.setVod_remarks(Utils.trim(movieDetail.getVod_remarks() + Objects.toString(movie.getDbScore(), "")));
+        movieDetail.setScore(NumberUtils.toDouble(movie.getDbScore()));
         movieDetail.setDbid(movie.getId());
         if (!details) {
             return;
@@ -1952,13 +2033,13 @@ public class TvBoxService {
         }
     }
 
-    private boolean setTmdbInfo(Site site, MovieDetail movieDetail, String path, boolean details) {
+    private boolean setTmdbInfo(Site site, MovieDetail movieDetail, String path, boolean details, Function<String, Tmdb> tmdbByPath) {
         Tmdb movie = null;
         try {
             if (site.isXiaoya()) {
-                movie = tmdbService.getByPath(path);
+                movie = tmdbByPath.apply(path);
                 if (movie == null) {
-                    movie = tmdbService.getByPath(getParent(path));
+                    movie = tmdbByPath.apply(getParent(path));
                 }
             }
 
@@ -1983,6 +2064,7 @@ public class TvBoxService {
             movie.setScore("");
         }
         movieDetail.setVod_remarks(Utils.trim(movieDetail.getVod_remarks() + Objects.toString(movie.getScore(), "")));
+        movieDetail.setScore(NumberUtils.toDouble(movie.getScore()));
         if (!details) {
             return;
         }
@@ -2075,6 +2157,55 @@ public class TvBoxService {
         return name;
     }
 
+    // warms the listing of the folder and the play url of the episode after this one
+    private void prefetchNextEpisode(Site site, String path) {
+        prefetch("file:" + site.getId() + path, () -> {
+            String parent = getParent(path);
+            String name = getNameFromPath(path);
+            FsResponse fsResponse = aListService.listFiles(site, parent, 1, 0);
+            if (fsResponse == null) {
+                return;
+            }
+            List<String> names = fsResponse.getFiles().stream()
+                    .filter(e -> e.getType() != 1 && isMediaFormat(e.getName()))
+                    .map(FsInfo::getName)
+                    .collect(Collectors.toList());
+            if (appProperties.isSort()) {
+                FileNameInfo.sort(names);
+            }
+            int index = names.indexOf(name);
+            if (index > -1 && index + 1 < names.size()) {
+                String next = fixPath(parent + "/" + names.get(index + 1));
+                log.debug("prefetch {}:{} {}", site.getId(), site.getName(), next);
+                aListService.prefetchFile(site, next);
+            }
+        });
+    }
+
+    private void prefetch(String key, Runnable task) {
+        if (prefetched.asMap().putIfAbsent(key, Boolean.TRUE) != null) {
+            return;
+        }
+        try {
+            prefetcher.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    log.debug("prefetch {} failed: {}", key, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // not queued, the next request may try again
+            prefetched.invalidate(key);
+            log.debug("prefetch {} dropped", key);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetcher.shutdownNow();
+    }
+
     private String getParent(String path) {
         int index = path.lastIndexOf('/');
         if (index > 0) {
@@ -2184,4 +2315,8 @@ public class TvBoxService {
         return URLEncoder.encode(url, StandardCharsets.UTF_8).replace("+", "%20");
     }
 
+
+    // the last row of a page and the total of the query, so the next page needs neither OFFSET nor COUNT
+    private record MetaCursor(Meta last, long total) {
+    }
 }
@@ -0,0 +1,24 @@
+package cn.har01d.alist_tvbox.tvbox;
+
+import cn.har01d.alist_tvbox.dto.IndexRequest;
+import lombok.Data;
+
+import java.util.HashSet;
+import java.util.Set;
+
+@Data
+public class IndexCheckpoint {
+    private Integer taskId;
+    private IndexRequest request;
+    // index of the path in the request that is being crawled
+    private int root;
+    // size of the work file when the run started, the lines after it were written by this run
+    private long start;
+    // size of the work file when the checkpoint was taken, anything after it is written again
+    private long length;
+    // size of the journal of folders and update times when the checkpoint was taken
+    private long journal;
+    // folders of the current path whose whole subtree is already in the index file
+    private Set<String> done = new HashSet<>();
+    private IndexContext.Stats stats = new IndexContext.Stats();
+}
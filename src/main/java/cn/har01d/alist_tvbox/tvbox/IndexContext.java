@@ -1,10 +1,12 @@
 package cn.har01d.alist_tvbox.tvbox;
 
 import cn.har01d.alist_tvbox.dto.IndexRequest;
+import cn.har01d.alist_tvbox.service.TaskProgress;
+import cn.har01d.alist_tvbox.util.TokenBucket;
 import lombok.Data;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -15,12 +17,20 @@ public class IndexContext {
     public Stats stats = new Stats();
     private final IndexRequest indexRequest;
     private final cn.har01d.alist_tvbox.entity.Site site;
-    private final FileWriter writer;
+    private final Writer writer;
     private final Integer taskId;
     private Set<String> set = new HashSet<>();
     private Map<String, String> time = new HashMap<>();
     private boolean includeFiles;
     private int maxDepth = 10;
+    private TokenBucket limiter;
+    private TaskProgress progress;
+    private IndexManifest manifest = IndexManifest.empty();
+    private Map<String, IndexManifest.Entry> folders = new HashMap<>();
+    private IndexCheckpoint checkpoint = new IndexCheckpoint();
+    private Set<String> resumed = Set.of();
+    private long checkpointTime = System.currentTimeMillis();
+    private Writer journal;
 
     public String getSiteName() {
         return site.getName();
@@ -49,12 +59,39 @@ public class IndexContext {
         }
     }
 
+    // folders and update times are appended to the journal, a checkpoint only records its length
+    public void putFolder(String path, IndexManifest.Entry entry) throws IOException {
+        folders.put(path, entry);
+        journal.write("F\t" + path + "\t" + entry.modified() + "\t" + entry.settings() + "\n");
+    }
+
+    public void putFolders(Map<String, IndexManifest.Entry> entries) throws IOException {
+        for (Map.Entry<String, IndexManifest.Entry> entry : entries.entrySet()) {
+            putFolder(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public void putTimes(Map<String, String> times) throws IOException {
+        for (Map.Entry<String, String> entry : times.entrySet()) {
+            if (entry.getValue() != null) {
+                time.put(entry.getKey(), entry.getValue());
+                journal.write("T\t" + entry.getKey() + "\t" + entry.getValue() + "\n");
+            }
+        }
+    }
+
+    public void clearTime() throws IOException {
+        time.clear();
+        journal.write("C\n");
+    }
+
     @Data
     public static class Stats {
         public int files;
         public int indexed;
         public int errors;
         public int excluded;
+        public int skipped;
 
         @Override
         public String toString() {
@@ -63,6 +100,7 @@ public class IndexContext {
                     ", indexed=" + indexed +
                     ", errors=" + errors +
                     ", excluded=" + excluded +
+                    ", skipped=" + skipped +
                     '}';
         }
     }
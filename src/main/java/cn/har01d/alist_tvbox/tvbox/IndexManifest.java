@@ -0,0 +1,94 @@
+package cn.har01d.alist_tvbox.tvbox;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// the folders of the last run by path, the lines of a reused folder come from the mapped search index of the index file
+public class IndexManifest {
+    private final NavigableMap<String, Entry> folders;
+    private final SearchIndex index;
+
+    private IndexManifest(NavigableMap<String, Entry> folders, SearchIndex index) {
+        this.folders = folders;
+        this.index = index;
+    }
+
+    public static IndexManifest empty() {
+        return new IndexManifest(new TreeMap<>(), null);
+    }
+
+    public static IndexManifest load(File manifest, SearchIndex index) throws IOException {
+        if (!manifest.exists() || index == null) {
+            return empty();
+        }
+
+        NavigableMap<String, Entry> folders = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(manifest.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", 3);
+                if (parts.length == 3) {
+                    folders.put(parts[2], new Entry(parts[0], parts[1]));
+                }
+            }
+        }
+        return new IndexManifest(folders, index);
+    }
+
+    public static void save(File manifest, Map<String, Entry> folders) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(manifest.toPath(), StandardCharsets.UTF_8)) {
+            for (var e : folders.entrySet()) {
+                writer.write(e.getValue().modified() + "\t" + e.getValue().settings() + "\t" + e.getKey() + "\n");
+            }
+        }
+    }
+
+    public boolean isUnchanged(String path, Entry entry) {
+        return StringUtils.isNotEmpty(entry.modified()) && entry.equals(folders.get(path));
+    }
+
+    // the folder and the lines of its subtree, in sorted order
+    public List<String> getLines(String path) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (index == null) {
+            return lines;
+        }
+        index.forEach(path, line -> {
+            if (line.equals(path)) {
+                lines.add(line);
+            }
+        });
+        index.forEach(path + "/", lines::add);
+        return lines;
+    }
+
+    public Map<String, Entry> getFolders(String path) {
+        String prefix = path + "/";
+        return new HashMap<>(folders.subMap(prefix, prefix + Character.MAX_VALUE));
+    }
+
+    public Map<String, Entry> getFoldersExcept(List<String> prefixes) {
+        Map<String, Entry> map = new HashMap<>();
+        for (var e : folders.entrySet()) {
+            if (prefixes.stream().noneMatch(e.getKey()::startsWith)) {
+                map.put(e.getKey(), e.getValue());
+            }
+        }
+        return map;
+    }
+
+    public record Entry(String modified, String settings) {
+    }
+}
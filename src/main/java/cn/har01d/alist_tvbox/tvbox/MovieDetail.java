@@ -1,5 +1,6 @@
 package cn.har01d.alist_tvbox.tvbox;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
 import java.util.Objects;
@@ -24,6 +25,8 @@ public class MovieDetail {
     private Integer dbid;
     private Long size;
     private CategoryList cate;
+    @JsonIgnore
+    private Double score;
 
     @Override
     public boolean equals(Object o) {
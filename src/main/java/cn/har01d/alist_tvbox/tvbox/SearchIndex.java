@@ -0,0 +1,809 @@
+package cn.har01d.alist_tvbox.tvbox;
+
+import cn.har01d.alist_tvbox.util.Utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+// the lines of an index file sorted by their UTF-8 bytes and front-coded in blocks, with the offsets of the blocks,
+// the sorted grams, the offsets of their postings and the postings, all in one memory-mapped file.
+// the index file itself is only read when this file is built, a line becomes a String when it is a result
+public class SearchIndex {
+    private static final int MAGIC = 0x41545653;
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 48;
+    // every block starts with a full line, so a line is decoded from at most this many entries
+    private static final int BLOCK_SIZE = 64;
+    // lines sorted or tokenized in memory before they are written to a sorted run
+    private static final int RUN_LINES = 20_000;
+    private static final long CJK = 1L << 62;
+    private static final long WORD = 1L << 61;
+    // the worst hit first, a lower score or the same score later in the sorted order
+    private static final Comparator<Hit> HIT_ORDER = Comparator.comparingDouble(Hit::score).thenComparing(Comparator.comparingInt(Hit::id).reversed());
+
+    private final long modified;
+    private final long size;
+    private final int lines;
+    private final ByteBuffer text;
+    private final IntBuffer blocks;
+    private final LongBuffer grams;
+    private final IntBuffer gramStarts;
+    private final IntBuffer postings;
+
+    private SearchIndex(MappedByteBuffer data) {
+        this.modified = data.getLong(8);
+        this.size = data.getLong(16);
+        this.lines = data.getInt(24);
+        int blockCount = data.getInt(28);
+        int textLength = data.getInt(32);
+        int gramCount = data.getInt(36);
+        int postingCount = data.getInt(40);
+        int offset = HEADER_SIZE;
+        this.text = data.slice(offset, textLength);
+        offset = align(offset + textLength);
+        this.blocks = data.slice(offset, (blockCount + 1) * 4).asIntBuffer();
+        offset = align(offset + (blockCount + 1) * 4);
+        this.grams = data.slice(offset, gramCount * 8).asLongBuffer();
+        offset += gramCount * 8;
+        this.gramStarts = data.slice(offset, (gramCount + 1) * 4).asIntBuffer();
+        offset += (gramCount + 1) * 4;
+        this.postings = data.slice(offset, postingCount * 4).asIntBuffer();
+    }
+
+    // the file is kept in the directory and built again only when the index file has changed.
+    // writers replace the index file with a new file, so it is read once from start to end
+    public static SearchIndex load(Path file, Path dir, long modified, long size) throws IOException {
+        Path path = getIndexPath(file, dir);
+        MappedByteBuffer data = Files.exists(path) ? map(path) : null;
+        if (data == null || !isCurrent(data, modified, size)) {
+            build(file, path, modified, size);
+            data = map(path);
+        }
+        return new SearchIndex(data);
+    }
+
+    public static Path getIndexPath(Path file, Path dir) {
+        return dir.resolve(Utils.md5(file.toAbsolutePath().toString()) + ".idx");
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("search index is too large: " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static boolean isCurrent(MappedByteBuffer data, long modified, long size) {
+        return data.limit() >= HEADER_SIZE
+                && data.getInt(0) == MAGIC
+                && data.getInt(4) == VERSION
+                && data.getLong(8) == modified
+                && data.getLong(16) == size;
+    }
+
+    private static int align(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    // the lines and the grams are both sorted a few thousand at a time into runs, and the runs are merged,
+    // so building the index needs about the same memory for any size of index file
+    private static void build(Path file, Path target, long modified, long size) throws IOException {
+        Path dir = target.getParent();
+        Files.createDirectories(dir);
+        List<Path> temps = new ArrayList<>();
+        try {
+            List<Path> lineRuns = sortLines(file, dir, temps);
+            Path textFile = createTemp(dir, temps);
+            Path blocksFile = createTemp(dir, temps);
+            List<Path> runs = new ArrayList<>();
+            int count = 0;
+            long textLength;
+            try (LineMerger merger = new LineMerger(lineRuns);
+                 DataOutputStream textOut = open(textFile);
+                 DataOutputStream blocksOut = open(blocksFile)) {
+                Map<Long, PostingList> run = new HashMap<>();
+                CountingOutputStream counter = new CountingOutputStream(textOut);
+                byte[] prev = new byte[0];
+                byte[] line;
+                while ((line = merger.next()) != null) {
+                    int id = count++;
+                    int shared = 0;
+                    if (id % BLOCK_SIZE == 0) {
+                        blocksOut.writeInt(checkLength(counter.count));
+                    } else {
+                        shared = Arrays.mismatch(prev, line);
+                        shared = shared < 0 ? line.length : shared;
+                        writeVarInt(counter, shared);
+                    }
+                    writeVarInt(counter, line.length - shared);
+                    counter.write(line, shared, line.length - shared);
+                    prev = line;
+
+                    if (line[0] != '-') {
+                        tokenize(new String(line, StandardCharsets.UTF_8), gram -> run.computeIfAbsent(gram, k -> new PostingList()).add(id));
+                    }
+                    if (run.size() > 0 && count % RUN_LINES == 0) {
+                        runs.add(writeRun(run, createTemp(dir, temps)));
+                        run.clear();
+                    }
+                }
+                textLength = checkLength(counter.count);
+                blocksOut.writeInt((int) textLength);
+                if (!run.isEmpty()) {
+                    runs.add(writeRun(run, createTemp(dir, temps)));
+                }
+            }
+
+            Path gramsFile = createTemp(dir, temps);
+            Path gramStartsFile = createTemp(dir, temps);
+            Path postingsFile = createTemp(dir, temps);
+            int[] counts = merge(runs, gramsFile, gramStartsFile, postingsFile);
+
+            Path temp = createTemp(dir, temps);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                int blockCount = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putLong(modified).putLong(size)
+                        .putInt(count).putInt(blockCount).putInt((int) textLength).putInt(counts[0]).putInt(counts[1]);
+                header.clear();
+                channel.write(header);
+                append(channel, textFile);
+                pad(channel);
+                append(channel, blocksFile);
+                pad(channel);
+                append(channel, gramsFile);
+                append(channel, gramStartsFile);
+                append(channel, postingsFile);
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("index file is too large: " + file);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            for (Path temp : temps) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private static int checkLength(long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("index file is too large");
+        }
+        return (int) length;
+    }
+
+    // the non-empty lines of the index file in sorted runs, the line breaks are not part of the lines
+    private static List<Path> sortLines(Path file, Path dir, List<Path> temps) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        List<byte[]> lines = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] chunk = new byte[64 * 1024];
+            byte[] line = new byte[256];
+            int length = 0;
+            int n;
+            while ((n = in.read(chunk)) >= 0) {
+                for (int i = 0; i < n; i++) {
+                    if (chunk[i] != '\n') {
+                        if (length == line.length) {
+                            line = Arrays.copyOf(line, length * 2);
+                        }
+                        line[length++] = chunk[i];
+                    } else {
+                        addLine(lines, line, length, runs, dir, temps);
+                        length = 0;
+                    }
+                }
+            }
+            addLine(lines, line, length, runs, dir, temps);
+        }
+        if (!lines.isEmpty()) {
+            runs.add(writeLines(lines, createTemp(dir, temps)));
+        }
+        return runs;
+    }
+
+    private static void addLine(List<byte[]> lines, byte[] line, int length, List<Path> runs, Path dir, List<Path> temps) throws IOException {
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        if (length == 0) {
+            return;
+        }
+        lines.add(Arrays.copyOf(line, length));
+        if (lines.size() == RUN_LINES) {
+            runs.add(writeLines(lines, createTemp(dir, temps)));
+            lines.clear();
+        }
+    }
+
+    private static Path writeLines(List<byte[]> lines, Path file) throws IOException {
+        lines.sort(Arrays::compareUnsigned);
+        try (DataOutputStream out = open(file)) {
+            for (byte[] line : lines) {
+                out.writeInt(line.length);
+                out.write(line);
+            }
+        }
+        return file;
+    }
+
+    private static Path createTemp(Path dir, List<Path> temps) throws IOException {
+        Path temp = Files.createTempFile(dir, "search", ".tmp");
+        temps.add(temp);
+        return temp;
+    }
+
+    private static DataOutputStream open(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+    }
+
+    private static DataInputStream read(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+    }
+
+    private static void append(FileChannel channel, Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            long size = in.size();
+            while (position < size) {
+                position += in.transferTo(position, size - position, channel);
+            }
+        }
+    }
+
+    private static void pad(FileChannel channel) throws IOException {
+        int position = (int) channel.position();
+        channel.write(ByteBuffer.allocate(align(position) - position));
+    }
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        while (value >= 0x80) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static Path writeRun(Map<Long, PostingList> run, Path file) throws IOException {
+        long[] keys = run.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        try (DataOutputStream out = open(file)) {
+            for (long key : keys) {
+                PostingList list = run.get(key);
+                out.writeLong(key);
+                out.writeInt(list.size);
+                for (int i = 0; i < list.size; i++) {
+                    out.writeInt(list.ids[i]);
+                }
+            }
+        }
+        return file;
+    }
+
+    // runs hold ascending line ids, so the postings of a gram are the runs concatenated in order
+    private static int[] merge(List<Path> runs, Path gramsFile, Path gramStartsFile, Path postingsFile) throws IOException {
+        PriorityQueue<Run> queue = new PriorityQueue<>(Comparator.comparingLong(Run::key).thenComparingInt(Run::index));
+        int gramCount = 0;
+        int postingCount = 0;
+        try (DataOutputStream gramsOut = open(gramsFile);
+             DataOutputStream startsOut = open(gramStartsFile);
+             DataOutputStream postingsOut = open(postingsFile)) {
+            for (int i = 0; i < runs.size(); i++) {
+                Run run = new Run(i, read(runs.get(i)));
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+            long current = 0;
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                if (gramCount == 0 || run.key != current) {
+                    current = run.key;
+                    gramsOut.writeLong(current);
+                    startsOut.writeInt(postingCount);
+                    gramCount++;
+                }
+                for (int i = 0; i < run.count; i++) {
+                    postingsOut.writeInt(run.in.readInt());
+                }
+                postingCount += run.count;
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+            startsOut.writeInt(postingCount);
+        } finally {
+            for (Run run : queue) {
+                run.close();
+            }
+        }
+        return new int[]{gramCount, postingCount};
+    }
+
+    public boolean isValid(long modified, long size) {
+        return this.modified == modified && this.size == size;
+    }
+
+    public int size() {
+        return lines;
+    }
+
+    public String getLine(int id) {
+        Cursor cursor = new Cursor();
+        cursor.seek(id);
+        return cursor.current();
+    }
+
+    // the lines starting with the prefix in sorted order, found by a binary search over the first lines of the blocks
+    public void forEach(String prefix, LineConsumer consumer) throws IOException {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = blocks.limit() - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (compareFirst(mid, key) < 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        Cursor cursor = new Cursor();
+        for (int id = low * BLOCK_SIZE; id < lines; id++) {
+            cursor.seek(id);
+            if (cursor.startsWith(key)) {
+                consumer.accept(cursor.current());
+            } else if (Arrays.compareUnsigned(cursor.buffer, 0, cursor.length, key, 0, key.length) > 0) {
+                break;
+            }
+        }
+    }
+
+    // every line containing all keywords is scored by its name and path, and only the best ones are decoded into results
+    public List<String> search(String keyword, int limit) {
+        SearchScorer scorer = new SearchScorer(keyword);
+        List<byte[]> patterns = new ArrayList<>();
+        Set<Integer> found = new HashSet<>();
+        for (String text : Arrays.stream(keyword.split("\\s+")).filter(e -> !e.isEmpty()).distinct().toList()) {
+            patterns.add(text.getBytes(StandardCharsets.UTF_8));
+            List<Long> queryGrams = new ArrayList<>();
+            tokenize(text, queryGrams::add);
+            for (long gram : queryGrams) {
+                int index = findGram(gram);
+                if (index < 0) {
+                    return List.of();
+                }
+                found.add(index);
+            }
+        }
+        if (limit <= 0 || patterns.isEmpty()) {
+            return List.of();
+        }
+
+        PriorityQueue<Hit> heap = new PriorityQueue<>(limit + 1, HIT_ORDER);
+        Cursor cursor = new Cursor();
+        if (found.isEmpty()) {
+            for (int id = 0; id < size(); id++) {
+                cursor.seek(id);
+                if (!cursor.isExcluded() && cursor.matches(patterns)) {
+                    offer(heap, limit, scorer, cursor, id);
+                }
+            }
+            return getResult(heap);
+        }
+
+        // walk the shortest posting list and skip ahead in the others, so a posting list is read at most once
+        int[] lists = found.stream().sorted(Comparator.comparingInt(i -> gramStarts.get(i + 1) - gramStarts.get(i))).mapToInt(Integer::intValue).toArray();
+        int[] cursors = new int[lists.length];
+        for (int i = 0; i < lists.length; i++) {
+            cursors[i] = gramStarts.get(lists[i]);
+        }
+        int end = gramStarts.get(lists[0] + 1);
+        candidates:
+        for (int p = cursors[0]; p < end; p++) {
+            int id = postings.get(p);
+            boolean all = true;
+            for (int i = 1; i < lists.length && all; i++) {
+                int to = gramStarts.get(lists[i] + 1);
+                cursors[i] = search(postings, cursors[i], to, id);
+                if (cursors[i] == to) {
+                    break candidates;
+                }
+                all = postings.get(cursors[i]) == id;
+            }
+            // postings only narrow down the candidates, the keywords still have to be contained in the line
+            if (all) {
+                cursor.seek(id);
+                if (cursor.matches(patterns)) {
+                    offer(heap, limit, scorer, cursor, id);
+                }
+            }
+        }
+        return getResult(heap);
+    }
+
+    private static void offer(PriorityQueue<Hit> heap, int limit, SearchScorer scorer, Cursor cursor, int id) {
+        String line = cursor.current();
+        double score = scorer.scoreLine(line);
+        // ids only grow, so a line that ties with the worst kept one is not better
+        if (heap.size() < limit || score > heap.peek().score()) {
+            heap.offer(new Hit(score, id, line));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+    }
+
+    private static List<String> getResult(PriorityQueue<Hit> heap) {
+        List<Hit> hits = new ArrayList<>(heap);
+        hits.sort(HIT_ORDER.reversed());
+        return hits.stream().map(Hit::line).toList();
+    }
+
+    private int compareFirst(int block, byte[] key) {
+        int pos = blocks.get(block);
+        int length = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = text.get(pos++) & 0xff;
+            length |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b >= 0x80);
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int result = Integer.compare(text.get(pos + i) & 0xff, key[i] & 0xff);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private int findGram(long gram) {
+        int low = 0;
+        int high = grams.limit() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = grams.get(mid);
+            if (value < gram) {
+                low = mid + 1;
+            } else if (value > gram) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // galloping search, the first position in [from, to) whose id is not less than the target
+    private static int search(IntBuffer postings, int from, int to, int target) {
+        int step = 1;
+        int high = from;
+        while (high < to && postings.get(high) < target) {
+            from = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, to);
+        while (from < high) {
+            int mid = (from + high) >>> 1;
+            if (postings.get(mid) < target) {
+                from = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return from;
+    }
+
+    // CJK bigrams, and bigrams and trigrams of lower case ASCII words, so that any substring
+    // of two or more characters is found through its grams without scanning the vocabulary
+    static void tokenize(String text, LongConsumer gram) {
+        int prev = -1;
+        int start = -1;
+        int i = 0;
+        while (i < text.length()) {
+            int c = text.codePointAt(i);
+            if (isCjk(c)) {
+                if (prev >= 0) {
+                    gram.accept(CJK | ((long) prev << 21) | c);
+                }
+                prev = c;
+            } else {
+                prev = -1;
+            }
+
+            if (isWordChar(c)) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                wordGrams(text, start, i, gram);
+                start = -1;
+            }
+            i += Character.charCount(c);
+        }
+        if (start >= 0) {
+            wordGrams(text, start, text.length(), gram);
+        }
+    }
+
+    // a single character word has no grams, its lines are only filtered by the other keywords
+    private static void wordGrams(String text, int start, int end, LongConsumer gram) {
+        for (int i = start; i + 1 < end; i++) {
+            long key = (long) lower(text.charAt(i)) << 8 | lower(text.charAt(i + 1));
+            gram.accept(WORD | key);
+            if (i + 2 < end) {
+                gram.accept(WORD | 1L << 24 | key << 8 | lower(text.charAt(i + 2)));
+            }
+        }
+    }
+
+    private static char lower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+    }
+
+    private static boolean isCjk(int c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static boolean isWordChar(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private record Hit(double score, int id, String line) {
+    }
+
+    public interface LineConsumer {
+        void accept(String line) throws IOException;
+    }
+
+    // decodes the lines of a block one after another, a seek backwards or into another block starts at the block
+    private final class Cursor {
+        private int pos;
+        private int id = -1;
+        private byte[] buffer = new byte[256];
+        private int length;
+
+        private void seek(int target) {
+            if (id < 0 || target < id || target / BLOCK_SIZE != id / BLOCK_SIZE) {
+                pos = blocks.get(target / BLOCK_SIZE);
+                id = target / BLOCK_SIZE * BLOCK_SIZE - 1;
+            }
+            while (id < target) {
+                next();
+            }
+        }
+
+        private void next() {
+            id++;
+            int shared = id % BLOCK_SIZE == 0 ? 0 : readVarInt();
+            int suffix = readVarInt();
+            length = shared + suffix;
+            if (length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(length, buffer.length * 2));
+            }
+            text.get(pos, buffer, shared, suffix);
+            pos += suffix;
+        }
+
+        private String current() {
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private boolean isExcluded() {
+            return length > 0 && buffer[0] == '-';
+        }
+
+        private boolean startsWith(byte[] key) {
+            return length >= key.length && Arrays.equals(buffer, 0, key.length, key, 0, key.length);
+        }
+
+        private boolean matches(List<byte[]> patterns) {
+            for (byte[] pattern : patterns) {
+                if (!contains(pattern)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // UTF-8 is self-synchronizing, so a byte match is a character match
+        private boolean contains(byte[] pattern) {
+            int last = length - pattern.length;
+            for (int i = 0; i <= last; i++) {
+                if (Arrays.equals(buffer, i, i + pattern.length, pattern, 0, pattern.length)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = text.get(pos++) & 0xff;
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b >= 0x80);
+            return value;
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static final class PostingList {
+        private int[] ids = new int[2];
+        private int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    // merges the sorted runs of lines, equal lines are all kept
+    private static final class LineMerger implements AutoCloseable {
+        private final PriorityQueue<LineRun> queue = new PriorityQueue<>((a, b) -> {
+            int result = Arrays.compareUnsigned(a.line, b.line);
+            return result != 0 ? result : Integer.compare(a.index, b.index);
+        });
+
+        private LineMerger(List<Path> runs) throws IOException {
+            for (int i = 0; i < runs.size(); i++) {
+                LineRun run = new LineRun(i, read(runs.get(i)));
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.in.close();
+                }
+            }
+        }
+
+        private byte[] next() throws IOException {
+            LineRun run = queue.poll();
+            if (run == null) {
+                return null;
+            }
+            byte[] line = run.line;
+            if (run.next()) {
+                queue.add(run);
+            } else {
+                run.in.close();
+            }
+            return line;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (LineRun run : queue) {
+                run.in.close();
+            }
+        }
+    }
+
+    private static final class LineRun {
+        private final int index;
+        private final DataInputStream in;
+        private byte[] line;
+
+        private LineRun(int index, DataInputStream in) {
+            this.index = index;
+            this.in = in;
+        }
+
+        private boolean next() throws IOException {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            line = new byte[length];
+            in.readFully(line);
+            return true;
+        }
+    }
+
+    private static final class Run {
+        private final int index;
+        private final DataInputStream in;
+        private long key;
+        private int count;
+
+        private Run(int index, DataInputStream in) {
+            this.index = index;
+            this.in = in;
+        }
+
+        private long key() {
+            return key;
+        }
+
+        private int index() {
+            return index;
+        }
+
+        private boolean next() throws IOException {
+            try {
+                key = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            count = in.readInt();
+            return true;
+        }
+
+        private void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package cn.har01d.alist_tvbox.tvbox;
+
+import org.apache.commons.lang3.math.NumberUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+// keeps the best results of all sites in a bounded heap, the worst one is evicted first.
+// the meta of a result is only looked up when it is still in the heap at the end
+public class SearchRanker {
+    private static final Comparator<Scored> ORDER = Comparator.comparingDouble(Scored::score)
+            .thenComparing(Comparator.comparingLong(Scored::seq).reversed());
+
+    private final SearchScorer scorer;
+    private final int limit;
+    private final PriorityQueue<Scored> heap;
+    private final Set<String> ids = new HashSet<>();
+    private long seq;
+
+    public SearchRanker(String keyword, int limit) {
+        this.scorer = new SearchScorer(keyword);
+        this.limit = limit;
+        this.heap = new PriorityQueue<>(limit + 1, ORDER);
+    }
+
+    public void addAll(Collection<Candidate> list) {
+        for (Candidate candidate : list) {
+            add(candidate.movie(), candidate.loader());
+        }
+    }
+
+    public void add(MovieDetail movie, Runnable loader) {
+        if (limit <= 0 || !ids.add(movie.getVod_id())) {
+            return;
+        }
+        heap.offer(new Scored(movie, score(movie), seq++, loader));
+        if (heap.size() > limit) {
+            heap.poll();
+        }
+    }
+
+    public List<MovieDetail> getResult() {
+        List<Scored> list = new ArrayList<>(heap.size());
+        for (Scored scored : heap) {
+            if (scored.loader() == null) {
+                list.add(scored);
+            } else {
+                // the scraped score and year only order the results that were kept
+                scored.loader().run();
+                list.add(new Scored(scored.movie(), score(scored.movie()), scored.seq(), null));
+            }
+        }
+        list.sort(ORDER.reversed());
+        return list.stream().map(Scored::movie).toList();
+    }
+
+    double score(MovieDetail movie) {
+        double score = scorer.score(movie.getVod_name(), movie.getVod_content());
+
+        if (movie.getScore() != null) {
+            score += Math.min(movie.getScore(), 10) * 1.5;
+        }
+
+        int year = NumberUtils.toInt(movie.getVod_year());
+        if (year > 1900) {
+            score += Math.min(Math.max(year - 1990, 0), 40) / 8.0;
+        }
+        return score;
+    }
+
+    // a result of one site, the loader fills in its meta if it is kept
+    public record Candidate(MovieDetail movie, Runnable loader) {
+    }
+
+    private record Scored(MovieDetail movie, double score, long seq, Runnable loader) {
+    }
+}
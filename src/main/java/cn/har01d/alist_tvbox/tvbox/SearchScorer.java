@@ -0,0 +1,70 @@
+package cn.har01d.alist_tvbox.tvbox;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// the part of the relevance that only needs the name and the path of a result, so the lines of an index file
+// are scored before anything is looked up for them
+public class SearchScorer {
+    private final String keyword;
+    private final List<String> keywords;
+
+    public SearchScorer(String keyword) {
+        this.keyword = normalize(keyword);
+        this.keywords = Arrays.stream(keyword.split("\\s+"))
+                .filter(StringUtils::isNotBlank)
+                .map(e -> e.toLowerCase(Locale.ROOT))
+                .toList();
+    }
+
+    public double score(String name, String path) {
+        name = StringUtils.defaultString(name).toLowerCase(Locale.ROOT);
+        path = StringUtils.defaultString(path).toLowerCase(Locale.ROOT);
+        double score = 0;
+
+        String normalized = normalize(name);
+        if (!keyword.isEmpty()) {
+            if (normalized.equals(keyword)) {
+                score += 40;
+            } else if (normalized.startsWith(keyword)) {
+                score += 25;
+            } else if (normalized.contains(keyword)) {
+                score += 15;
+            }
+        }
+
+        if (!keywords.isEmpty()) {
+            long inName = keywords.stream().filter(name::contains).count();
+            long inPath = keywords.stream().filter(path::contains).count();
+            score += 20.0 * inName / keywords.size();
+            score += 5.0 * inPath / keywords.size();
+        }
+
+        if (path.startsWith("/")) {
+            score -= Math.min(StringUtils.countMatches(path, '/'), 10);
+        }
+        return score;
+    }
+
+    // a line of an index file, with the same name and path as the result built from it
+    public double scoreLine(String line) {
+        if (line.startsWith("+")) {
+            line = line.substring(1);
+        }
+        if (line.startsWith("./")) {
+            line = line.substring(1);
+        }
+        int index = line.indexOf('#');
+        if (index > 0) {
+            line = line.substring(0, index);
+        }
+        return score(line.substring(line.lastIndexOf('/') + 1), line);
+    }
+
+    private static String normalize(String text) {
+        return text.replaceAll("\\s+", "").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,106 @@
+package cn.har01d.alist_tvbox.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeMap;
+
+// finds which of many literal patterns occur in a text with one scan
+public class AhoCorasick {
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] fail;
+    private final int[][] outputs;
+
+    public AhoCorasick(List<String> patterns) {
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        children.add(new TreeMap<>());
+        ends.add(new ArrayList<>());
+        for (int i = 0; i < patterns.size(); i++) {
+            int state = 0;
+            for (char c : patterns.get(i).toCharArray()) {
+                Integer next = children.get(state).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.get(state).put(c, next);
+                    children.add(new TreeMap<>());
+                    ends.add(new ArrayList<>());
+                }
+                state = next;
+            }
+            ends.get(state).add(i);
+        }
+
+        int size = children.size();
+        keys = new char[size][];
+        targets = new int[size][];
+        for (int state = 0; state < size; state++) {
+            TreeMap<Character, Integer> map = children.get(state);
+            keys[state] = new char[map.size()];
+            targets[state] = new int[map.size()];
+            int j = 0;
+            for (var entry : map.entrySet()) {
+                keys[state][j] = entry.getKey();
+                targets[state][j++] = entry.getValue();
+            }
+        }
+
+        // breadth first, so the fail state of a node is done before the node
+        fail = new int[size];
+        outputs = new int[size][];
+        outputs[0] = ends.get(0).stream().mapToInt(Integer::intValue).toArray();
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[0]) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            List<Integer> output = new ArrayList<>(ends.get(state));
+            if (state != 0 && fail[state] != 0) {
+                for (int id : outputs[fail[state]]) {
+                    output.add(id);
+                }
+            }
+            outputs[state] = output.stream().mapToInt(Integer::intValue).toArray();
+            for (int j = 0; j < keys[state].length; j++) {
+                int child = targets[state][j];
+                int f = fail[state];
+                int next = state == 0 ? -1 : goTo(f, keys[state][j]);
+                while (next < 0 && f != 0) {
+                    f = fail[f];
+                    next = goTo(f, keys[state][j]);
+                }
+                fail[child] = next < 0 || next == child ? 0 : next;
+                queue.add(child);
+            }
+        }
+    }
+
+    // the bit of a pattern is set if the pattern occurs in the text
+    public BitSet find(CharSequence text) {
+        BitSet found = new BitSet();
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next = goTo(state, c);
+            while (next < 0 && state != 0) {
+                state = fail[state];
+                next = goTo(state, c);
+            }
+            state = next < 0 ? 0 : next;
+            for (int id : outputs[state]) {
+                found.set(id);
+            }
+        }
+        return found;
+    }
+
+    private int goTo(int state, char c) {
+        int j = Arrays.binarySearch(keys[state], c);
+        return j < 0 ? -1 : targets[state][j];
+    }
+}
@@ -0,0 +1,128 @@
+package cn.har01d.alist_tvbox.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// finds the rows whose path contains a text by the pairs of chars of their paths, instead of a LIKE '%text%' scan.
+// a text of one char has no pair, the caller has to scan for it
+public class PathGramIndex {
+    private static final int[] EMPTY = new int[0];
+
+    private final Map<Integer, String> paths = new HashMap<>();
+    private final Map<Integer, Postings> postings = new HashMap<>();
+
+    public synchronized int size() {
+        return paths.size();
+    }
+
+    public synchronized void put(int id, String path) {
+        String old = path == null ? paths.remove(id) : paths.put(id, path);
+        if (path != null && path.equals(old)) {
+            return;
+        }
+        Set<Integer> removed = grams(old);
+        Set<Integer> added = grams(path);
+        for (int gram : removed) {
+            if (!added.contains(gram)) {
+                Postings list = postings.get(gram);
+                if (list != null && list.remove(id) && list.size == 0) {
+                    postings.remove(gram);
+                }
+            }
+        }
+        for (int gram : added) {
+            if (!removed.contains(gram)) {
+                postings.computeIfAbsent(gram, k -> new Postings()).add(id);
+            }
+        }
+    }
+
+    public synchronized void remove(int id) {
+        put(id, null);
+    }
+
+    // the ids of the paths containing the text in ascending order, the shortest posting list is walked
+    // and the others are only probed
+    public synchronized int[] find(String text) {
+        Set<Integer> grams = grams(text);
+        if (grams.isEmpty()) {
+            throw new IllegalArgumentException("text is too short: " + text);
+        }
+
+        Postings[] lists = new Postings[grams.size()];
+        int i = 0;
+        for (int gram : grams) {
+            Postings list = postings.get(gram);
+            if (list == null) {
+                return EMPTY;
+            }
+            lists[i++] = list;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+        int[] result = new int[lists[0].size];
+        int count = 0;
+        candidates:
+        for (int j = 0; j < lists[0].size; j++) {
+            int id = lists[0].ids[j];
+            for (int k = 1; k < lists.length; k++) {
+                if (!lists[k].contains(id)) {
+                    continue candidates;
+                }
+            }
+            // the pairs may be in the path in another order
+            if (paths.get(id).contains(text)) {
+                result[count++] = id;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static Set<Integer> grams(String text) {
+        if (text == null || text.length() < 2) {
+            return Set.of();
+        }
+        Set<Integer> grams = new HashSet<>();
+        for (int i = 0; i + 1 < text.length(); i++) {
+            grams.add(text.charAt(i) << 16 | text.charAt(i + 1));
+        }
+        return grams;
+    }
+
+    // sorted ids, new rows get growing ids so they are appended
+    private static class Postings {
+        private int[] ids = new int[2];
+        private int size;
+
+        private boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        private void add(int id) {
+            int index = size == 0 || ids[size - 1] < id ? -size - 1 : Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        private boolean remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+}
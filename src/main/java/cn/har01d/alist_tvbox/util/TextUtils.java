@@ -3,6 +3,7 @@ package cn.har01d.alist_tvbox.util;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -21,6 +22,353 @@ public class TextUtils {
     private static final Pattern NAME1 = Pattern.compile("^【(.+)】$");
     private static final Pattern NAME2 = Pattern.compile("^\\w (.+)\\s+\\(\\d{4}\\).*");
     private static final Pattern NAME3 = Pattern.compile("^\\w (.+)\\.\\d{4} .+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final Pattern SEPARATORS = Pattern.compile("[. ]+");
+    private static final NoisePattern[] NOISE_PATTERNS = {
+            new NoisePattern("No", "(No.\\d+ ?)"),
+            new NoisePattern("、", "\\d+、"),
+            new NoisePattern(".", "\\.\\d{4}"),
+            new NoisePattern(" ", " \\d{4}"),
+            new NoisePattern("全", "\\s*全\\d+集"),
+            new NoisePattern("-", "第?\\d-\\d+([季部])"),
+            new NoisePattern("全", ".([季部])全"),
+            new NoisePattern("GB", "[0-9.]+GB"),
+            new NoisePattern("豆瓣评分", "豆瓣评分：?[0-9.]+"),
+            new NoisePattern("NO ", "NO \\d+\\｜"),
+            new NoisePattern("(", "\\(\\d{4}\\)")
+    };
+    private static final NoisePattern RANGE = new NoisePattern("1~", "1~\\d{1,2}");
+    private static final NoisePattern EPISODE_RANGE = new NoisePattern("1-", "1-\\d+集");
+    private static final NoisePattern MOVIES = new NoisePattern("部剧场版", "共\\d+集\\+\\d+部剧场版");
+    // noise tokens of folder names, replaced in this order
+    private static final String[][] REPLACEMENTS = {
+            {"超前完结", " "},
+            {"番外", " "},
+            {"彩蛋", " "},
+            {"豆瓣", " "},
+            {"完整全集", " "},
+            {"稀有国日双语版", " "},
+            {"官方中英双字", " "},
+            {"(CC版)", " "},
+            {"国粤英多音轨", " "},
+            {"粤语音轨", " "},
+            {"国英双语", " "},
+            {"国语配音版", " "},
+            {"韩语中字", " "},
+            {"韩语官中", " "},
+            {"字幕版", " "},
+            {"国配简繁特效", " "},
+            {"简繁双语特效字幕", " "},
+            {"导评简繁六字幕", " "},
+            {"内封简英双字", " "},
+            {"内封简、繁中字", " "},
+            {"国粤英3语", " "},
+            {"国粤语配音", " "},
+            {"粤语配音", " "},
+            {"中英双语字幕", " "},
+            {"带中文字幕", " "},
+            {"日英四语", " "},
+            {"国日双语", " "},
+            {"官方中字", " "},
+            {"台日双语", " "},
+            {"华语配音", " "},
+            {"普通话版", " "},
+            {"（普通话）", " "},
+            {"外挂双语", " "},
+            {"内封中字", " "},
+            {"有字幕", " "},
+            {"双语版", " "},
+            {"日语版", " "},
+            {"电视版本", " "},
+            {"电视版", " "},
+            {"外挂中文字幕", " "},
+            {"内封多字幕", " "},
+            {"中英特效字幕", " "},
+            {"简繁英双语字幕", " "},
+            {"简繁英特效字幕", " "},
+            {"简繁英双语特效字幕", " "},
+            {"简繁英字幕", " "},
+            {"简体字幕", " "},
+            {"繁英字幕", " "},
+            {"简繁字幕", " "},
+            {"繁英字幕", " "},
+            {"简英字幕", " "},
+            {"简繁双语字幕", " "},
+            {"国语音轨", " "},
+            {"国语配音", " "},
+            {"国韩多音轨", " "},
+            {"国英多音轨", " "},
+            {"多音轨", " "},
+            {"(粤语中字)", " "},
+            {"英语中字", " "},
+            {"BD中英双字", " "},
+            {"特效中英双字", " "},
+            {"中英双字", " "},
+            {"中英字幕", " "},
+            {"特效字幕", " "},
+            {"中文字幕", " "},
+            {"日语无字", " "},
+            {"国日英三语", " "},
+            {"日粤英三语", " "},
+            {"简日双语内封", " "},
+            {"陆台粤日语", " "},
+            {"简繁日内封", " "},
+            {"粤日中字", " "},
+            {"台配繁中", " "},
+            {"简中内封", " "},
+            {"简中内嵌", " "},
+            {"简体内嵌", " "},
+            {"简繁内嵌", " "},
+            {"简繁内嵌", " "},
+            {"简繁内封", " "},
+            {"无字幕", " "},
+            {"双语", " "},
+            {"国语版", " "},
+            {"国语", " "},
+            {"国英", " "},
+            {"中配", " "},
+            {"官中", " "},
+            {"粤语", " "},
+            {"国粤", " "},
+            {"剧情", " "},
+            {"仅英轨", " "},
+            {"配音版", " "},
+            {"台配国语", " "},
+            {"台配", " "},
+            {"俄语", " "},
+            {".中日双语", " "},
+            {".日语", " "},
+            {"日语", " "},
+            {"日语版", " "},
+            {"全系列电影", " "},
+            {"系列合集", " "},
+            {"大合集", " "},
+            {"合集", " "},
+            {"-系列", " "},
+            {"系列", " "},
+            {"持续更新中", " "},
+            {"更新中", " "},
+            {".内嵌", " "},
+            {".日配", " "},
+            {"(客串)", " "},
+            {"HD720P", " "},
+            {"720P", " "},
+            {".720p", " "},
+            {".720P", " "},
+            {"HD720P", " "},
+            {"720P", " "},
+            {".1080p", " "},
+            {".1080P", " "},
+            {"HD1080P", " "},
+            {"1080p", " "},
+            {"1080P", " "},
+            {".2160p", " "},
+            {"2160p", " "},
+            {"2160P", " "},
+            {"3840x2160", " "},
+            {"120帧率版本", " "},
+            {"60FPS修复珍藏版", " "},
+            {"60帧率版本", " "},
+            {"音轨版", " "},
+            {"HDR版本", " "},
+            {"[HDR]", " "},
+            {"HDR", " "},
+            {"MP4", " "},
+            {".4k", " "},
+            {" 4k ", " "},
+            {"高码4K", " "},
+            {"4K修复版", " "},
+            {"4K修复", " "},
+            {"蓝光原盘REMUX", " "},
+            {"4K原盘REMUX", " "},
+            {"4K REMUX", " "},
+            {"杜比视界", " "},
+            {"杜比", " "},
+            {"REMUX", " "},
+            {"REMXU", " "},
+            {"RMVB", " "},
+            {"4K HDR", " "},
+            {"4K版", " "},
+            {"纯净版", " "},
+            {"10bit", " "},
+            {"60fps", " "},
+            {"WEB-DL", " "},
+            {"BD", " "},
+            {"DDP5", " "},
+            {"BluRay", " "},
+            {"H265", " "},
+            {"H264", " "},
+            {"x265", " "},
+            {"X264", " "},
+            {"x264", " "},
+            {"4K修复珍藏版", " "},
+            {"蓝光原盘", " "},
+            {"蓝光高清", " "},
+            {"蓝光版", " "},
+            {"蓝光", " "},
+            {"高码版", " "},
+            {"部分高清", " "},
+            {"标清", " "},
+            {"4K原盘", " "},
+            {"超清4K修复", " "},
+            {"超清", " "},
+            {"4K修复版", " "},
+            {"4K收藏版", " "},
+            {"4K双版本", " "},
+            {"最终剪辑版", " "},
+            {"双版本", " "},
+            {"[4K]", " "},
+            {"4K", " "},
+            {"4k", " "},
+            {"60帧", " "},
+            {"高码率", " "},
+            {".超高码率", " "},
+            {"杜比视界版本", " "},
+            {"IMAX", " "},
+            {"+外传", " "},
+            {"+番外篇", " "},
+            {"+番外", " "},
+            {"+漫画", " "},
+            {"+电影", " "},
+            {"国漫-", " "},
+            {"电视剧", " "},
+            {"剧版", " "},
+            {"网剧", " "},
+            {"短剧", " "},
+            {"衍生剧", " "},
+            {"美漫", " "},
+            {"全季", " "},
+            {"加剧场版", " "},
+            {"+剧场版", " "},
+            {"剧场版", " "},
+            {"加外传", " "},
+            {"+真人版", " "},
+            {"真人版", " "},
+            {"精编版", " "},
+            {"电视系列片", " "},
+            {"纪录片专场", " "},
+            {"真实人物改编", " "},
+            {"真实故事", " "},
+            {"迷你剧", " "},
+            {"系列片", " "},
+            {"动漫加真人", " "},
+            {"动漫+真人", " "},
+            {"导演剪辑版", " "},
+            {"高码收藏版", " "},
+            {"高码", " "},
+            {"高清黑金珍藏版", " "},
+            {"高清修复版", " "},
+            {"重置版", " "},
+            {"洗版", " "},
+            {"特典映像", " "},
+            {"收藏版", " "},
+            {"「珍藏版」", " "},
+            {"珍藏版", " "},
+            {"极致版", " "},
+            {"典藏版", " "},
+            {"特别版", " "},
+            {"老版", " "},
+            {"经典老剧", " "},
+            {"经典剧", " "},
+            {"连续剧", " "},
+            {"未删减版", " "},
+            {"未删减", " "},
+            {"无删减", " "},
+            {"无台标", " "},
+            {"重制版", " "},
+            {"完整高清", " "},
+            {"完结篇", " "},
+            {"完结", " "},
+            {"高分剧", " "},
+            {"未精校", " "},
+            {"霸王龙压制", " "},
+            {"酷漫字幕组", " "},
+            {"凤凰天使", " "},
+            {"[一只鱼4kyu.cc]", " "},
+            {"（流媒体）", " "},
+            {"+Q版", " "},
+            {"+OVA", " "},
+            {"+SP", " "},
+            {"+前传", " "},
+            {"中国大陆区", " "},
+            //{"大陆", " "},
+            {"未分级重剪加长版", " "},
+            {"【美剧】", " "},
+            {"【法国】", " "},
+            {"【西班牙】", " "},
+            {"【俄罗斯】", " "},
+            {"【英剧】", " "},
+            {"【爱情片】", " "},
+            {"【纪录片】", " "},
+            {"泰国奇幻剧", " "},
+            {"【美漫】", " "},
+            {"美剧", " "},
+            {"喜剧", " "},
+            {"综艺", " "},
+            {"意大利", " "},
+            {"恐怖剧", " "},
+            {"科幻剧", " "},
+            {"国产剧", " "},
+            {"悬疑|传记剧", " "},
+            {"悬疑", " "},
+            {"[恐怖]", " "},
+            {"惊悚", " "},
+            {"短片", " "},
+            {"电影版", " "},
+            {"-系列", " "},
+            {"系列", " "},
+            {"全集", " "},
+            {"中字", " "},
+            {"外挂字幕", " "},
+            {"无字", " "},
+            {"无水印版", " "},
+            {"无水印", " "},
+            {"腾讯水印", " "},
+            {"腾讯", " "},
+            {"B站", " "},
+            {"OVA", " "},
+            {"TV加MOV", " "},
+            {"HDTV", " "},
+            {"GOTV", " "},
+            {"NHK", " "},
+            {"人人影视制作", " "},
+            {"高清翡翠台", " "},
+            {"TVB版", " "},
+            {"TVB", " "},
+            {"ATV", " "},
+            {"BBC", " "},
+            {"(剧版)", " "},
+            {"DVD版", " "},
+            {"DVD", " "},
+            {"《单片》", " "},
+            {"公众号：锦技社", " "},
+            {"推荐!", " "},
+            {"[", " "},
+            {"]", " "},
+            {"【", " "},
+            {"】", " "},
+            {"（", "("},
+            {"）", ")"},
+            {"《", " "},
+            {"》", " "},
+            {",", " "},
+            {"..", " "},
+            {"_", " "},
+            {"⭐", " "},
+            {"|", " "},
+            {"丨", ""},
+            {"+", " "},
+            {"Ⅰ", "第一季"},
+            {"Ⅱ", "第二季"},
+            {"II", "第二季"},
+            {"III", "第三季"},
+            {"Ⅲ", "第三季"},
+            {"Ⅳ", "第四季"},
+            {"Ⅴ", "第五季"},
+            {"Ⅵ", "第六季"},
+            {"~", ""}
+    };
+    private static final AhoCorasick REPLACEMENT_MATCHER = new AhoCorasick(Arrays.stream(REPLACEMENTS).map(e -> e[0]).toList());
 
     public static boolean isChineseChar(int c) {
         return c >= 0x4E00 && c <= 0x9FA5;
@@ -79,7 +427,7 @@ public class TextUtils {
             }
         }
 
-        String[] parts = newName.replace("[", "").replace("]", " ").split("[. ]+");
+        String[] parts = SEPARATORS.split(newName.replace("[", "").replace("]", " "));
         if (parts.length > 4 && (parts[0].length() > 1 && parts[1].length() > 1 && isChinese(parts[0]))) {
             if (isEnglish(parts[1])) {
                 newName = parts[0];
@@ -88,335 +436,10 @@ public class TextUtils {
             }
         }
 
-        newName = newName
-                .replaceAll("1~\\d{1,2}", " ")
-                .replaceAll("1-\\d+集", " ")
-                .replaceAll("共\\d+集\\+\\d+部剧场版", " ")
-                .replace("超前完结", " ")
-                .replace("番外", " ")
-                .replace("彩蛋", " ")
-                .replace("豆瓣", " ")
-                .replace("完整全集", " ")
-                .replace("稀有国日双语版", " ")
-                .replace("官方中英双字", " ")
-                .replace("(CC版)", " ")
-                .replace("国粤英多音轨", " ")
-                .replace("粤语音轨", " ")
-                .replace("国英双语", " ")
-                .replace("国语配音版", " ")
-                .replace("韩语中字", " ")
-                .replace("韩语官中", " ")
-                .replace("字幕版", " ")
-                .replace("国配简繁特效", " ")
-                .replace("简繁双语特效字幕", " ")
-                .replace("导评简繁六字幕", " ")
-                .replace("内封简英双字", " ")
-                .replace("内封简、繁中字", " ")
-                .replace("国粤英3语", " ")
-                .replace("国粤语配音", " ")
-                .replace("粤语配音", " ")
-                .replace("中英双语字幕", " ")
-                .replace("带中文字幕", " ")
-                .replace("日英四语", " ")
-                .replace("国日双语", " ")
-                .replace("官方中字", " ")
-                .replace("台日双语", " ")
-                .replace("华语配音", " ")
-                .replace("普通话版", " ")
-                .replace("（普通话）", " ")
-                .replace("外挂双语", " ")
-                .replace("内封中字", " ")
-                .replace("有字幕", " ")
-                .replace("双语版", " ")
-                .replace("日语版", " ")
-                .replace("电视版本", " ")
-                .replace("电视版", " ")
-                .replace("外挂中文字幕", " ")
-                .replace("内封多字幕", " ")
-                .replace("中英特效字幕", " ")
-                .replace("简繁英双语字幕", " ")
-                .replace("简繁英特效字幕", " ")
-                .replace("简繁英双语特效字幕", " ")
-                .replace("简繁英字幕", " ")
-                .replace("简体字幕", " ")
-                .replace("繁英字幕", " ")
-                .replace("简繁字幕", " ")
-                .replace("繁英字幕", " ")
-                .replace("简英字幕", " ")
-                .replace("简繁双语字幕", " ")
-                .replace("国语音轨", " ")
-                .replace("国语配音", " ")
-                .replace("国韩多音轨", " ")
-                .replace("国英多音轨", " ")
-                .replace("多音轨", " ")
-                .replace("(粤语中字)", " ")
-                .replace("英语中字", " ")
-                .replace("BD中英双字", " ")
-                .replace("特效中英双字", " ")
-                .replace("中英双字", " ")
-                .replace("中英字幕", " ")
-                .replace("特效字幕", " ")
-                .replace("中文字幕", " ")
-                .replace("日语无字", " ")
-                .replace("国日英三语", " ")
-                .replace("日粤英三语", " ")
-                .replace("简日双语内封", " ")
-                .replace("陆台粤日语", " ")
-                .replace("简繁日内封", " ")
-                .replace("粤日中字", " ")
-                .replace("台配繁中", " ")
-                .replace("简中内封", " ")
-                .replace("简中内嵌", " ")
-                .replace("简体内嵌", " ")
-                .replace("简繁内嵌", " ")
-                .replace("简繁内嵌", " ")
-                .replace("简繁内封", " ")
-                .replace("无字幕", " ")
-                .replace("双语", " ")
-                .replace("国语版", " ")
-                .replace("国语", " ")
-                .replace("国英", " ")
-                .replace("中配", " ")
-                .replace("官中", " ")
-                .replace("粤语", " ")
-                .replace("国粤", " ")
-                .replace("剧情", " ")
-                .replace("仅英轨", " ")
-                .replace("配音版", " ")
-                .replace("台配国语", " ")
-                .replace("台配", " ")
-                .replace("俄语", " ")
-                .replace(".中日双语", " ")
-                .replace(".日语", " ")
-                .replace("日语", " ")
-                .replace("日语版", " ")
-                .replace("全系列电影", " ")
-                .replace("系列合集", " ")
-                .replace("大合集", " ")
-                .replace("合集", " ")
-                .replace("-系列", " ")
-                .replace("系列", " ")
-                .replace("持续更新中", " ")
-                .replace("更新中", " ")
-                .replace(".内嵌", " ")
-                .replace(".日配", " ")
-                .replace("(客串)", " ")
-                .replace("HD720P", " ")
-                .replace("720P", " ")
-                .replace(".720p", " ")
-                .replace(".720P", " ")
-                .replace("HD720P", " ")
-                .replace("720P", " ")
-                .replace(".1080p", " ")
-                .replace(".1080P", " ")
-                .replace("HD1080P", " ")
-                .replace("1080p", " ")
-                .replace("1080P", " ")
-                .replace(".2160p", " ")
-                .replace("2160p", " ")
-                .replace("2160P", " ")
-                .replace("3840x2160", " ")
-                .replace("120帧率版本", " ")
-                .replace("60FPS修复珍藏版", " ")
-                .replace("60帧率版本", " ")
-                .replace("音轨版", " ")
-                .replace("HDR版本", " ")
-                .replace("[HDR]", " ")
-                .replace("HDR", " ")
-                .replace("MP4", " ")
-                .replace(".4k", " ")
-                .replace(" 4k ", " ")
-                .replace("高码4K", " ")
-                .replace("4K修复版", " ")
-                .replace("4K修复", " ")
-                .replace("蓝光原盘REMUX", " ")
-                .replace("4K原盘REMUX", " ")
-                .replace("4K REMUX", " ")
-                .replace("杜比视界", " ")
-                .replace("杜比", " ")
-                .replace("REMUX", " ")
-                .replace("REMXU", " ")
-                .replace("RMVB", " ")
-                .replace("4K HDR", " ")
-                .replace("4K版", " ")
-                .replace("纯净版", " ")
-                .replace("10bit", " ")
-                .replace("60fps", " ")
-                .replace("WEB-DL", " ")
-                .replace("BD", " ")
-                .replace("DDP5", " ")
-                .replace("BluRay", " ")
-                .replace("H265", " ")
-                .replace("H264", " ")
-                .replace("x265", " ")
-                .replace("X264", " ")
-                .replace("x264", " ")
-                .replace("4K修复珍藏版", " ")
-                .replace("蓝光原盘", " ")
-                .replace("蓝光高清", " ")
-                .replace("蓝光版", " ")
-                .replace("蓝光", " ")
-                .replace("高码版", " ")
-                .replace("部分高清", " ")
-                .replace("标清", " ")
-                .replace("4K原盘", " ")
-                .replace("超清4K修复", " ")
-                .replace("超清", " ")
-                .replace("4K修复版", " ")
-                .replace("4K收藏版", " ")
-                .replace("4K双版本", " ")
-                .replace("最终剪辑版", " ")
-                .replace("双版本", " ")
-                .replace("[4K]", " ")
-                .replace("4K", " ")
-                .replace("4k", " ")
-                .replace("60帧", " ")
-                .replace("高码率", " ")
-                .replace(".超高码率", " ")
-                .replace("杜比视界版本", " ")
-                .replace("IMAX", " ")
-                .replace("+外传", " ")
-                .replace("+番外篇", " ")
-                .replace("+番外", " ")
-                .replace("+漫画", " ")
-                .replace("+电影", " ")
-                .replace("国漫-", " ")
-                .replace("电视剧", " ")
-                .replace("剧版", " ")
-                .replace("网剧", " ")
-                .replace("短剧", " ")
-                .replace("衍生剧", " ")
-                .replace("美漫", " ")
-                .replace("全季", " ")
-                .replace("加剧场版", " ")
-                .replace("+剧场版", " ")
-                .replace("剧场版", " ")
-                .replace("加外传", " ")
-                .replace("+真人版", " ")
-                .replace("真人版", " ")
-                .replace("精编版", " ")
-                .replace("电视系列片", " ")
-                .replace("纪录片专场", " ")
-                .replace("真实人物改编", " ")
-                .replace("真实故事", " ")
-                .replace("迷你剧", " ")
-                .replace("系列片", " ")
-                .replace("动漫加真人", " ")
-                .replace("动漫+真人", " ")
-                .replace("导演剪辑版", " ")
-                .replace("高码收藏版", " ")
-                .replace("高码", " ")
-                .replace("高清黑金珍藏版", " ")
-                .replace("高清修复版", " ")
-                .replace("重置版", " ")
-                .replace("洗版", " ")
-                .replace("特典映像", " ")
-                .replace("收藏版", " ")
-                .replace("「珍藏版」", " ")
-                .replace("珍藏版", " ")
-                .replace("极致版", " ")
-                .replace("典藏版", " ")
-                .replace("特别版", " ")
-                .replace("老版", " ")
-                .replace("经典老剧", " ")
-                .replace("经典剧", " ")
-                .replace("连续剧", " ")
-                .replace("未删减版", " ")
-                .replace("未删减", " ")
-                .replace("无删减", " ")
-                .replace("无台标", " ")
-                .replace("重制版", " ")
-                .replace("完整高清", " ")
-                .replace("完结篇", " ")
-                .replace("完结", " ")
-                .replace("高分剧", " ")
-                .replace("未精校", " ")
-                .replace("霸王龙压制", " ")
-                .replace("酷漫字幕组", " ")
-                .replace("凤凰天使", " ")
-                .replace("[一只鱼4kyu.cc]", " ")
-                .replace("（流媒体）", " ")
-                .replace("+Q版", " ")
-                .replace("+OVA", " ")
-                .replace("+SP", " ")
-                .replace("+前传", " ")
-                .replace("中国大陆区", " ")
-                //.replace("大陆", " ")
-                .replace("未分级重剪加长版", " ")
-                .replace("【美剧】", " ")
-                .replace("【法国】", " ")
-                .replace("【西班牙】", " ")
-                .replace("【俄罗斯】", " ")
-                .replace("【英剧】", " ")
-                .replace("【爱情片】", " ")
-                .replace("【纪录片】", " ")
-                .replace("泰国奇幻剧", " ")
-                .replace("【美漫】", " ")
-                .replace("美剧", " ")
-                .replace("喜剧", " ")
-                .replace("综艺", " ")
-                .replace("意大利", " ")
-                .replace("恐怖剧", " ")
-                .replace("科幻剧", " ")
-                .replace("国产剧", " ")
-                .replace("悬疑|传记剧", " ")
-                .replace("悬疑", " ")
-                .replace("[恐怖]", " ")
-                .replace("惊悚", " ")
-                .replace("短片", " ")
-                .replace("电影版", " ")
-                .replace("-系列", " ")
-                .replace("系列", " ")
-                .replace("全集", " ")
-                .replace("中字", " ")
-                .replace("外挂字幕", " ")
-                .replace("无字", " ")
-                .replace("无水印版", " ")
-                .replace("无水印", " ")
-                .replace("腾讯水印", " ")
-                .replace("腾讯", " ")
-                .replace("B站", " ")
-                .replace("OVA", " ")
-                .replace("TV加MOV", " ")
-                .replace("HDTV", " ")
-                .replace("GOTV", " ")
-                .replace("NHK", " ")
-                .replace("人人影视制作", " ")
-                .replace("高清翡翠台", " ")
-                .replace("TVB版", " ")
-                .replace("TVB", " ")
-                .replace("ATV", " ")
-                .replace("BBC", " ")
-                .replace("(剧版)", " ")
-                .replace("DVD版", " ")
-                .replace("DVD", " ")
-                .replace("《单片》", " ")
-                .replace("公众号：锦技社", " ")
-                .replace("推荐!", " ")
-                .replace("[", " ")
-                .replace("]", " ")
-                .replace("【", " ")
-                .replace("】", " ")
-                .replace("（", "(")
-                .replace("）", ")")
-                .replace("《", " ")
-                .replace("》", " ")
-                .replace(",", " ")
-                .replace("..", " ")
-                .replace("_", " ")
-                .replace("⭐", " ")
-                .replace("|", " ")
-                .replace("丨", "")
-                .replace("+", " ")
-                .replace("Ⅰ", "第一季")
-                .replace("Ⅱ", "第二季")
-                .replace("II", "第二季")
-                .replace("III", "第三季")
-                .replace("Ⅲ", "第三季")
-                .replace("Ⅳ", "第四季")
-                .replace("Ⅴ", "第五季")
-                .replace("Ⅵ", "第六季")
-                .replace("~", "");
+        newName = RANGE.replace(newName);
+        newName = EPISODE_RANGE.replace(newName);
+        newName = MOVIES.replace(newName);
+        newName = replaceTokens(newName);
 
         Matcher m = NAME1.matcher(newName);
         if (m.matches()) {
@@ -433,19 +456,9 @@ public class TextUtils {
             newName = m.group(1);
         }
 
-        newName = newName
-                .replaceAll("(No.\\d+ ?)", " ")
-                .replaceAll("\\d+、", " ")
-                .replaceAll("\\.\\d{4}", " ")
-                .replaceAll(" \\d{4}", " ")
-                .replaceAll("\\s*全\\d+集", " ")
-                .replaceAll("第?\\d-\\d+([季部])", " ")
-                .replaceAll(".([季部])全", " ")
-                .replaceAll("[0-9.]+GB", " ")
-                .replaceAll("豆瓣评分：?[0-9.]+", " ")
-                .replaceAll("NO \\d+\\｜", " ")
-                .replaceAll("\\(\\d{4}\\)", " ")
-        ;
+        for (NoisePattern pattern : NOISE_PATTERNS) {
+            newName = pattern.replace(newName);
+        }
 
         m = NUMBER.matcher(newName);
         if (m.find()) {
@@ -499,16 +512,35 @@ public class TextUtils {
 //            newName = newName.substring(0, newName.length() - 1);
 //        }
 
-        newName = newName
-                .replaceAll("\\s+", " ")
-                .replaceAll("\\.", " ")
-                .trim();
+        newName = SPACES.matcher(newName).replaceAll(" ").replace('.', ' ').trim();
         if (!name.equals(newName)) {
             log.debug("name: {} -> {}", name, newName);
         }
         return newName;
     }
 
+    // a token is only replaced if the text contains it, the text is scanned again after every change
+    // because a replacement can create a later token, so the result is the same as replacing all in order
+    private static String replaceTokens(String text) {
+        BitSet found = REPLACEMENT_MATCHER.find(text);
+        for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+            text = text.replace(REPLACEMENTS[i][0], REPLACEMENTS[i][1]);
+            found = REPLACEMENT_MATCHER.find(text);
+        }
+        return text;
+    }
+
+    // the regex only runs if the text contains the literal part of every match
+    private record NoisePattern(String literal, Pattern pattern) {
+        NoisePattern(String literal, String regex) {
+            this(literal, Pattern.compile(regex));
+        }
+
+        String replace(String text) {
+            return text.contains(literal) ? pattern.matcher(text).replaceAll(" ") : text;
+        }
+    }
+
     public static String number2text(String text) {
         if (text.startsWith("0") && text.length() > 1) {
             text = text.substring(1);
@@ -0,0 +1,45 @@
+package cn.har01d.alist_tvbox.util;
+
+import java.util.concurrent.TimeUnit;
+
+public class TokenBucket {
+    private final double rate;
+    private final double capacity;
+    private double tokens;
+    private long last;
+
+    public TokenBucket(double rate, double capacity) {
+        this.rate = rate;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.last = System.nanoTime();
+    }
+
+    public static TokenBucket ofInterval(long millis) {
+        return new TokenBucket(millis > 0 ? 1000.0 / millis : 0, 1);
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public void acquire() throws InterruptedException {
+        if (rate <= 0) {
+            return;
+        }
+
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - last) * rate / 1_000_000_000L);
+            last = now;
+            // reserve the token now, callers arriving later queue up behind it
+            tokens -= 1;
+            wait = tokens >= 0 ? 0 : (long) (-tokens / rate * 1_000_000_000L);
+        }
+
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
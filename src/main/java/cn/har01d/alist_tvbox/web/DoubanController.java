@@ -5,6 +5,7 @@ import cn.har01d.alist_tvbox.dto.Versions;
 import cn.har01d.alist_tvbox.entity.MetaRepository;
 import cn.har01d.alist_tvbox.service.DoubanService;
 import cn.har01d.alist_tvbox.service.IndexService;
+import cn.har01d.alist_tvbox.service.MetaSearchService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.data.domain.Page;
@@ -25,17 +26,19 @@ public class DoubanController {
     private final DoubanService service;
     private final IndexService indexService;
     private final MetaRepository metaRepository;
+    private final MetaSearchService metaSearchService;
 
-    public DoubanController(DoubanService service, IndexService indexService, MetaRepository metaRepository) {
+    public DoubanController(DoubanService service, IndexService indexService, MetaRepository metaRepository, MetaSearchService metaSearchService) {
         this.service = service;
         this.indexService = indexService;
         this.metaRepository = metaRepository;
+        this.metaSearchService = metaSearchService;
     }
 
     @GetMapping("/api/meta")
     public Page<MetaDto> list(Pageable pageable, String q) {
         if (StringUtils.isNotBlank(q)) {
-            return metaRepository.findByPathContains(q, pageable).map(MetaDto::new);
+            return metaSearchService.findMetas(q, pageable).map(MetaDto::new);
         }
         return metaRepository.findAll(pageable).map(MetaDto::new);
     }
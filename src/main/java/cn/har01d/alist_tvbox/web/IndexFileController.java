@@ -45,6 +45,13 @@ public class IndexFileController {
         service.uploadIndexFile(siteId, indexName, file);
     }
 
+    @GetMapping("/export")
+    public FileSystemResource exportIndexFile(String siteId, String indexName, @RequestParam(required = false) String prefix, HttpServletResponse response) throws IOException {
+        response.addHeader("Content-Disposition", "attachment; filename=\"index.txt\"");
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        return service.exportIndexFile(siteId, indexName, prefix);
+    }
+
     @GetMapping("/download")
     public FileSystemResource downloadIndexFile(String siteId, HttpServletResponse response) throws IOException {
         response.addHeader("Content-Disposition", "attachment; filename=\"index.zip\"");
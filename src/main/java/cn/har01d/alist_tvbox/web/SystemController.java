@@ -1,6 +1,10 @@
 package cn.har01d.alist_tvbox.web;
 
 import cn.har01d.alist_tvbox.domain.SystemInfo;
+import cn.har01d.alist_tvbox.dto.CacheStats;
+import cn.har01d.alist_tvbox.service.AListService;
+import cn.har01d.alist_tvbox.service.SearchCacheService;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -10,6 +14,13 @@ import java.util.Properties;
 
 @RestController
 public class SystemController {
+    private final SearchCacheService searchCacheService;
+    private final AListService aListService;
+
+    public SystemController(SearchCacheService searchCacheService, AListService aListService) {
+        this.searchCacheService = searchCacheService;
+        this.aListService = aListService;
+    }
 
     @GetMapping("/api/system")
     public SystemInfo getSystemInfo() throws UnknownHostException {
@@ -37,4 +48,23 @@ public class SystemController {
         );
     }
 
+    @GetMapping("/api/system/search-cache")
+    public CacheStats getSearchCacheStats() {
+        return searchCacheService.getStats();
+    }
+
+    @DeleteMapping("/api/system/search-cache")
+    public void clearSearchCache() {
+        searchCacheService.invalidate("manual");
+    }
+
+    @GetMapping("/api/system/listing-cache")
+    public CacheStats getListingCacheStats() {
+        return aListService.getListingStats();
+    }
+
+    @DeleteMapping("/api/system/listing-cache")
+    public void clearListingCache() {
+        aListService.invalidateAll("manual");
+    }
 }
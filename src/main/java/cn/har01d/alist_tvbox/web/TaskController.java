@@ -1,6 +1,8 @@
 package cn.har01d.alist_tvbox.web;
 
+import cn.har01d.alist_tvbox.dto.IndexResponse;
 import cn.har01d.alist_tvbox.entity.Task;
+import cn.har01d.alist_tvbox.service.IndexService;
 import cn.har01d.alist_tvbox.service.TaskService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -12,13 +14,17 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+
 @RestController
 @RequestMapping("/api/tasks")
 public class TaskController {
     private final TaskService taskService;
+    private final IndexService indexService;
 
-    public TaskController(TaskService taskService) {
+    public TaskController(TaskService taskService, IndexService indexService) {
         this.taskService = taskService;
+        this.indexService = indexService;
     }
 
     @GetMapping
@@ -45,4 +51,9 @@ public class TaskController {
     public Task cancelTask(@PathVariable Integer id) {
         return taskService.cancelTask(id);
     }
+
+    @PostMapping("/{id}/resume")
+    public IndexResponse resumeTask(@PathVariable Integer id) throws IOException {
+        return indexService.resume(id);
+    }
 }
@@ -2,6 +2,7 @@ package cn.har01d.alist_tvbox.web;
 
 import cn.har01d.alist_tvbox.dto.MetaDto;
 import cn.har01d.alist_tvbox.entity.TmdbMetaRepository;
+import cn.har01d.alist_tvbox.service.MetaSearchService;
 import cn.har01d.alist_tvbox.service.TmdbService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -24,16 +25,18 @@ import java.util.List;
 public class TmdbController {
     private final TmdbService service;
     private final TmdbMetaRepository metaRepository;
+    private final MetaSearchService metaSearchService;
 
-    public TmdbController(TmdbService service, TmdbMetaRepository metaRepository) {
+    public TmdbController(TmdbService service, TmdbMetaRepository metaRepository, MetaSearchService metaSearchService) {
         this.service = service;
         this.metaRepository = metaRepository;
+        this.metaSearchService = metaSearchService;
     }
 
     @GetMapping("/meta")
     public Page<MetaDto> list(Pageable pageable, String q) {
         if (StringUtils.isNotBlank(q)) {
-            return metaRepository.findByPathContains(q, pageable).map(MetaDto::new);
+            return metaSearchService.findTmdbMetas(q, pageable).map(MetaDto::new);
         }
         return metaRepository.findAll(pageable).map(MetaDto::new);
     }
@@ -406,7 +406,7 @@ public class YoutubeService {
             String prefix = Utils.getCommonPrefix(list);
             if (prefix.length() > 1) {
                 log.debug("Sort: {}", prefix);
-                list.sort(Comparator.comparing(FileNameInfo::new));
+                FileNameInfo.sort(list);
             }
             movieDetail.setVod_play_url(String.join("#", list));
             result.getList().add(movieDetail);
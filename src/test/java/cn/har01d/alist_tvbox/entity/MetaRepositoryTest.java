@@ -0,0 +1,148 @@
+package cn.har01d.alist_tvbox.entity;
+
+import cn.har01d.alist_tvbox.dto.MetaFilter;
+import cn.har01d.alist_tvbox.service.AListService;
+import cn.har01d.alist_tvbox.service.MetaSearchService;
+import cn.har01d.alist_tvbox.service.SearchCacheService;
+import cn.har01d.alist_tvbox.service.SiteService;
+import cn.har01d.alist_tvbox.service.TitleDictionaryService;
+import cn.har01d.alist_tvbox.service.TvBoxService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// a page of meta must cost the same number of statements whatever its size, movie and tmdb are fetched with it
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class MetaRepositoryTest {
+    @MockBean
+    private SearchCacheService searchCacheService;
+    @MockBean
+    private TitleDictionaryService titleDictionaryService;
+    @MockBean
+    private AListService aListService;
+    @MockBean
+    private TvBoxService tvBoxService;
+    @MockBean
+    private SiteService siteService;
+    @MockBean
+    private MetaSearchService metaSearchService;
+
+    @Autowired
+    private MetaRepository metaRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void findAllBySpecification() {
+        assertConstantStatements(n -> {
+            var page = metaRepository.findAll(MetaSpecifications.byFilter(MetaFilter.of("/", "", "")), PageRequest.of(0, n));
+            assertLoaded(page.getContent(), n);
+        });
+    }
+
+    @Test
+    void findAllByPage() {
+        assertConstantStatements(n -> assertLoaded(metaRepository.findAll(PageRequest.of(0, n)).getContent(), n));
+    }
+
+    @Test
+    void findByPathIn() {
+        assertConstantStatements(n -> {
+            List<String> paths = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                paths.add(path(i));
+            }
+            assertLoaded(metaRepository.findByPathIn(paths), n);
+        });
+    }
+
+    @Test
+    void findByIdInAndPathContains() {
+        assertConstantStatements(n -> {
+            List<Integer> ids = metaRepository.findAll().stream().limit(n).map(Meta::getId).toList();
+            entityManager.clear();
+            statistics.clear();
+            var page = metaRepository.findByIdInAndPathContains(ids, "movie", PageRequest.of(0, 100));
+            assertLoaded(page.getContent(), n);
+        });
+    }
+
+    @Test
+    void findAllById() {
+        assertConstantStatements(n -> {
+            List<Integer> ids = metaRepository.findAll().stream().limit(n).map(Meta::getId).toList();
+            entityManager.clear();
+            statistics.clear();
+            assertLoaded(metaRepository.findAllById(ids), n);
+        });
+    }
+
+    private void assertConstantStatements(Consumer<Integer> query) {
+        save(50);
+        long small = countStatements(query, 5);
+        long large = countStatements(query, 50);
+        assertThat(large).isEqualTo(small);
+    }
+
+    private long countStatements(Consumer<Integer> query, int rows) {
+        entityManager.clear();
+        statistics.clear();
+        query.accept(rows);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void assertLoaded(List<Meta> list, int rows) {
+        assertThat(list).hasSize(rows);
+        for (Meta meta : list) {
+            assertThat(meta.getMovie().getName()).isNotNull();
+            assertThat(meta.getTmdb().getName()).isNotNull();
+        }
+    }
+
+    private void save(int rows) {
+        for (int i = 0; i < rows; i++) {
+            Movie movie = new Movie();
+            movie.setId(i + 1);
+            movie.setName("movie " + i);
+            entityManager.persist(movie);
+
+            Tmdb tmdb = new Tmdb();
+            tmdb.setName("tmdb " + i);
+            entityManager.persist(tmdb);
+
+            Meta meta = new Meta();
+            meta.setPath(path(i));
+            meta.setName("meta " + i);
+            meta.setMovie(movie);
+            meta.setTmdb(tmdb);
+            entityManager.persist(meta);
+        }
+        entityManager.flush();
+    }
+
+    private static String path(int i) {
+        return "/电影/movie " + i;
+    }
+}
@@ -0,0 +1,92 @@
+package cn.har01d.alist_tvbox.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileNameInfoTest {
+    private static final String[] CHINESE = {"一", "二", "三", "四", "五", "六", "七", "八", "九", "十"};
+
+    @Test
+    void sortMatchesComparingOnEveryComparison() {
+        List<String> names = episodes(2000);
+        List<String> expected = new ArrayList<>(names);
+        expected.sort(Comparator.comparing(FileNameInfo::new));
+
+        List<String> actual = new ArrayList<>(names);
+        FileNameInfo.sort(actual);
+
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    void sortReversedMatchesComparingOnEveryComparison() {
+        List<String> names = episodes(2000);
+        List<String> expected = new ArrayList<>(names);
+        expected.sort(Comparator.comparing(FileNameInfo::new).reversed());
+
+        List<String> actual = new ArrayList<>(names);
+        FileNameInfo.sort(actual, e -> e, true);
+
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    void sortByName() {
+        List<String> names = new ArrayList<>(List.of("第10集.mp4", "第2集.mp4", "第1集.mp4", "番外(下).mp4", "番外(上).mp4", "S02E01.mkv", "S01E03.mkv"));
+        FileNameInfo.sort(names.subList(0, 3));
+        FileNameInfo.sort(names.subList(3, 5));
+        FileNameInfo.sort(names.subList(5, 7));
+
+        assertThat(names).containsExactly("第1集.mp4", "第2集.mp4", "第10集.mp4", "番外(上).mp4", "番外(下).mp4", "S01E03.mkv", "S02E01.mkv");
+    }
+
+    // the speedup without a clock: every name is parsed once instead of twice per comparison
+    @Test
+    void sortParsesEveryNameOnce() {
+        List<String> names = episodes(2000);
+        AtomicInteger comparing = new AtomicInteger();
+        new ArrayList<>(names).sort(Comparator.comparing(e -> {
+            comparing.incrementAndGet();
+            return new FileNameInfo(e);
+        }));
+
+        AtomicInteger keyed = new AtomicInteger();
+        FileNameInfo.sort(new ArrayList<>(names), e -> {
+            keyed.incrementAndGet();
+            return e;
+        });
+
+        assertThat(keyed.get()).isEqualTo(names.size());
+        assertThat(comparing.get()).isGreaterThan(names.size() * 10);
+    }
+
+    // names of a few series mixed like a big share folder, with the naming styles found in the index files
+    private static List<String> episodes(int count) {
+        Random random = new Random(42);
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; names.size() < count; i++) {
+            int season = i % 5 + 1;
+            int episode = i / 5 + 1;
+            switch (i % 8) {
+                case 0 -> names.add(String.format("S%02dE%02d.1080p.mkv", season, episode));
+                case 1 -> names.add("第" + episode + "集.mp4");
+                case 2 -> names.add(String.format("庆余年.EP%02d.2160p.WEB-DL.mp4", episode));
+                case 3 -> names.add("第" + CHINESE[episode % 10] + "季 第" + episode + "话.mkv");
+                case 4 -> names.add("番外" + (episode % 3 == 0 ? "(上)" : episode % 3 == 1 ? "(中)" : "(下)") + episode + ".mp4");
+                case 5 -> names.add(String.format("%03d.mp4", episode));
+                case 6 -> names.add("Friends." + season + "x" + episode + ".v" + (episode % 3) + ".mkv");
+                default -> names.add("花絮" + random.nextInt(100) + ".mp4");
+            }
+        }
+        Collections.shuffle(names, random);
+        return names;
+    }
+}
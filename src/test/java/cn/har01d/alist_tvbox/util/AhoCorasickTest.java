@@ -0,0 +1,55 @@
+package cn.har01d.alist_tvbox.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AhoCorasickTest {
+    @Test
+    void findOverlappingPatterns() {
+        AhoCorasick matcher = new AhoCorasick(List.of("he", "she", "his", "hers"));
+
+        // "she" ends where "he" ends, "hers" starts inside "she"
+        assertThat(matcher.find("ushers")).isEqualTo(bits(0, 1, 3));
+        assertThat(matcher.find("ahishers")).isEqualTo(bits(0, 1, 2, 3));
+        assertThat(matcher.find("hi")).isEqualTo(bits());
+    }
+
+    @Test
+    void findThroughFailLinks() {
+        AhoCorasick matcher = new AhoCorasick(List.of("abcd", "bce", "c", "aab"));
+
+        // "abc" fails into "bc" to match "bce", "c" is only reached through the fail link
+        assertThat(matcher.find("abce")).isEqualTo(bits(1, 2));
+        // "aab" is found after falling back from "aa" to "a"
+        assertThat(matcher.find("aaab")).isEqualTo(bits(3));
+        assertThat(matcher.find("xabcdx")).isEqualTo(bits(0, 2));
+    }
+
+    @Test
+    void findChinesePatterns() {
+        AhoCorasick matcher = new AhoCorasick(List.of("国语", "国英双语", "双语", "中英字幕"));
+
+        assertThat(matcher.find("速度与激情4.国英双语.中英字幕")).isEqualTo(bits(1, 2, 3));
+        assertThat(matcher.find("国国语")).isEqualTo(bits(0));
+    }
+
+    @Test
+    void findPatternsSharingPrefix() {
+        AhoCorasick matcher = new AhoCorasick(List.of("1080", "1080p", "10", "080p"));
+
+        assertThat(matcher.find("1080p")).isEqualTo(bits(0, 1, 2, 3));
+        assertThat(matcher.find("108")).isEqualTo(bits(2));
+    }
+
+    private static BitSet bits(int... ids) {
+        BitSet bits = new BitSet();
+        for (int id : ids) {
+            bits.set(id);
+        }
+        return bits;
+    }
+}
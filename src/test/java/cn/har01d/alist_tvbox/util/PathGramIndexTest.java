@@ -0,0 +1,95 @@
+package cn.har01d.alist_tvbox.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PathGramIndexTest {
+    @Test
+    void findContainedText() {
+        PathGramIndex index = new PathGramIndex();
+        index.put(1, "/电影/流浪地球2");
+        index.put(2, "/电视剧/流浪者");
+        index.put(3, "/电影/地球脉动");
+
+        assertThat(index.find("流浪")).containsExactly(1, 2);
+        assertThat(index.find("地球")).containsExactly(1, 3);
+        assertThat(index.find("/电影/")).containsExactly(1, 3);
+        assertThat(index.find("电视剧/流浪者")).containsExactly(2);
+        assertThat(index.find("球地")).isEmpty();
+        assertThat(index.find("xyz")).isEmpty();
+    }
+
+    @Test
+    void checkThePathNotOnlyThePairs() {
+        PathGramIndex index = new PathGramIndex();
+        // has the pairs "ab" and "ba" of "aba" but not the text
+        index.put(1, "/ab/ba");
+        index.put(2, "/aba");
+
+        assertThat(index.find("aba")).containsExactly(2);
+    }
+
+    @Test
+    void followUpdatesAndRemoves() {
+        PathGramIndex index = new PathGramIndex();
+        index.put(5, "/movies/Avatar");
+        index.put(3, "/movies/Avengers");
+        index.put(9, "/tv/Avenue 5");
+
+        assertThat(index.find("Ave")).containsExactly(3, 9);
+
+        index.put(3, "/movies/Alien");
+        assertThat(index.find("Ave")).containsExactly(9);
+        assertThat(index.find("Ali")).containsExactly(3);
+
+        index.remove(9);
+        index.remove(100);
+        assertThat(index.find("Ave")).isEmpty();
+        assertThat(index.find("/movies/")).containsExactly(3, 5);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectSingleChar() {
+        assertThatThrownBy(() -> new PathGramIndex().find("a")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void sameAsScan() {
+        List<String> parts = List.of("电影", "流浪", "地球", "4K", "S01", "第一季", "ab", "ba", "/", " ");
+        Random random = new Random(1);
+        PathGramIndex index = new PathGramIndex();
+        Map<Integer, String> paths = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            // ids are mostly growing, some rows are saved again with another path or removed
+            int id = random.nextInt(10) == 0 ? random.nextInt(i + 1) : i;
+            if (random.nextInt(20) == 0) {
+                index.remove(id);
+                paths.remove(id);
+                continue;
+            }
+            StringBuilder path = new StringBuilder("/");
+            for (int j = 1 + random.nextInt(6); j > 0; j--) {
+                path.append(parts.get(random.nextInt(parts.size())));
+            }
+            index.put(id, path.toString());
+            paths.put(id, path.toString());
+        }
+
+        for (String text : List.of("流浪", "地球/", "4KS01", "aba", "bab", "第一季 ", "/电影", "S01第一季")) {
+            int[] expected = paths.entrySet().stream()
+                    .filter(e -> e.getValue().contains(text))
+                    .mapToInt(Map.Entry::getKey)
+                    .sorted()
+                    .toArray();
+            assertThat(index.find(text)).as(text).containsExactly(expected);
+        }
+    }
+}
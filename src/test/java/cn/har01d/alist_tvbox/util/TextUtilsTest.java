@@ -0,0 +1,44 @@
+package cn.har01d.alist_tvbox.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextUtilsTest {
+    // folder names of data/index.share.zip and what fixName returned for them before the replacements were matched in one scan
+    @Test
+    void fixNameMatchesGoldenCorpus() throws IOException {
+        List<String> mismatches = new ArrayList<>();
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Objects.requireNonNull(getClass().getResourceAsStream("/fix_name.tsv")), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+                String actual = TextUtils.fixName(parts[0]);
+                if (!actual.equals(parts[1])) {
+                    mismatches.add(parts[0] + " -> " + actual + ", expected " + parts[1]);
+                }
+                count++;
+            }
+        }
+
+        assertThat(count).isGreaterThan(1000);
+        assertThat(mismatches).isEmpty();
+    }
+
+    @Test
+    void fixNameAppliesReplacementsInOrder() {
+        assertThat(TextUtils.fixName("速度与激情4.Fast.and.Furious.4.2009.BD1080P.国英双语.中英字幕.mp4")).isEqualTo("速度与激情4");
+        assertThat(TextUtils.fixName("路人女主的养成方法第二季")).isEqualTo("路人女主的养成方法 第二季");
+        assertThat(TextUtils.fixName("A《宫斗剧合集》[23部]")).isEqualTo("宫斗剧");
+    }
+}